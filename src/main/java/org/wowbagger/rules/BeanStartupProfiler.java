@@ -0,0 +1,207 @@
+package org.wowbagger.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessorAdapter;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Measures instantiation and initialization of beans while Spring context starts. Used by 
+ * {@link SpringContextRule#profileStartup(int)}, but it can be added to any context before refresh:
+ * <pre>
+ *	ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext(locations, false);
+ *	BeanStartupProfiler profiler = new BeanStartupProfiler();
+ *	profiler.refresh(context);
+ *	System.out.println(profiler.report(10));
+ * </pre>
+ * 
+ * Profiler registers itself as the first bean post processor, so post processors declared in configuration are
+ * measured too. Beans created as dependencies of another bean are subtracted from its self time.
+ */
+public class BeanStartupProfiler extends InstantiationAwareBeanPostProcessorAdapter implements BeanFactoryPostProcessor {
+
+	/** Beans being created by current thread, innermost last. */
+	private final ThreadLocal<LinkedList<Timing>> creating = new ThreadLocal<LinkedList<Timing>>() {
+		@Override
+		protected LinkedList<Timing> initialValue() {
+			return new LinkedList<Timing>();
+		}
+	};
+	
+	private final List<BeanTiming> timings = Collections.synchronizedList(new ArrayList<BeanTiming>());
+	
+	private volatile long refreshNanos = -1;
+	
+	/**
+	 * Registers profiler to the context and refreshes it, time of whole refresh is measured.
+	 * @param context context which wasn't refreshed yet
+	 */
+	public void refresh(ConfigurableApplicationContext context) {
+		context.addBeanFactoryPostProcessor(this);
+		long begin = System.nanoTime();
+		context.refresh();
+		refreshNanos = System.nanoTime() - begin;
+	}
+	
+	public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+		beanFactory.addBeanPostProcessor(this);
+	}
+	
+	@Override
+	@SuppressWarnings("rawtypes")
+	public Object postProcessBeforeInstantiation(Class beanClass, String beanName) throws BeansException {
+		creating.get().addLast(new Timing(beanName));
+		return null;
+	}
+	
+	@Override
+	public boolean postProcessAfterInstantiation(Object bean, String beanName) throws BeansException {
+		Timing timing = find(beanName);
+		if (timing != null) {
+			timing.instantiated = System.nanoTime();
+		}
+		return true;
+	}
+	
+	@Override
+	public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+		Timing timing = find(beanName);
+		if (timing != null) {
+			timing.initializing = System.nanoTime();
+		}
+		return bean;
+	}
+	
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		long now = System.nanoTime();
+		LinkedList<Timing> stack = creating.get();
+		if (find(beanName) == null) {
+			return bean; // object created by FactoryBean or bean not seen before instantiation
+		}
+		Timing timing;
+		do {
+			timing = stack.removeLast(); // beans above the finished one failed
+		} while (!timing.name.equals(beanName));
+		long total = now - timing.start;
+		long instantiated = timing.instantiated != 0 ? timing.instantiated : now;
+		long initializing = timing.initializing != 0 ? timing.initializing : instantiated;
+		if (!stack.isEmpty()) {
+			stack.getLast().children += total;
+		}
+		timings.add(new BeanTiming(beanName, instantiated - timing.start, now - initializing, total, total - timing.children));
+		return bean;
+	}
+	
+	private Timing find(String beanName) {
+		LinkedList<Timing> stack = creating.get();
+		for (int i = stack.size() - 1; i >= 0; i--) {
+			if (stack.get(i).name.equals(beanName))
+				return stack.get(i);
+		}
+		return null;
+	}
+	
+	/**
+	 * @return time of context refresh in nanoseconds, -1 if context wasn't refreshed by {@link #refresh(ConfigurableApplicationContext)}
+	 */
+	public long getRefreshNanos() {
+		return refreshNanos;
+	}
+	
+	/**
+	 * @return timings of created beans, slowest self time first
+	 */
+	public List<BeanTiming> getBeanTimings() {
+		List<BeanTiming> sorted;
+		synchronized (timings) {
+			sorted = new ArrayList<BeanTiming>(timings);
+		}
+		Collections.sort(sorted, new Comparator<BeanTiming>() {
+			public int compare(BeanTiming o1, BeanTiming o2) {
+				return o1.selfNanos < o2.selfNanos ? 1 : o1.selfNanos > o2.selfNanos ? -1 : 0;
+			}
+		});
+		return sorted;
+	}
+	
+	/**
+	 * @param top number of reported beans
+	 * @return total refresh time and slowest beans
+	 */
+	public String report(int top) {
+		List<BeanTiming> sorted = getBeanTimings();
+		StringBuilder report = new StringBuilder(String.format("Context refresh %.1f ms, %d beans, slowest beans:", 
+				refreshNanos / 1e6, sorted.size()));
+		for (BeanTiming timing : sorted.subList(0, Math.min(top, sorted.size()))) {
+			report.append("\n  ").append(timing);
+		}
+		return report.toString();
+	}
+	
+	private static class Timing {
+		final String name;
+		final long start = System.nanoTime();
+		long instantiated;
+		long initializing;
+		long children;
+		
+		Timing(String name) {
+			this.name = name;
+		}
+	}
+	
+	/**
+	 * Startup times of one bean. Total time includes creation of beans it depends on, self time doesn't.
+	 */
+	public static class BeanTiming {
+		private final String beanName;
+		private final long instantiationNanos;
+		private final long initializationNanos;
+		private final long totalNanos;
+		private final long selfNanos;
+		
+		BeanTiming(String beanName, long instantiationNanos, long initializationNanos, long totalNanos, long selfNanos) {
+			this.beanName = beanName;
+			this.instantiationNanos = instantiationNanos;
+			this.initializationNanos = initializationNanos;
+			this.totalNanos = totalNanos;
+			this.selfNanos = selfNanos;
+		}
+		
+		public String getBeanName() {
+			return beanName;
+		}
+		
+		/** Time from start of creation until the bean is constructed, including constructor dependencies. */
+		public long getInstantiationNanos() {
+			return instantiationNanos;
+		}
+		
+		/** Time of init methods and post processors, population of properties is not included. */
+		public long getInitializationNanos() {
+			return initializationNanos;
+		}
+		
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+		
+		public long getSelfNanos() {
+			return selfNanos;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%s: self %.3f ms, total %.3f ms (instantiation %.3f ms, initialization %.3f ms)", 
+					beanName, selfNanos / 1e6, totalNanos / 1e6, instantiationNanos / 1e6, initializationNanos / 1e6);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package org.wowbagger.rules;
+
+import org.wowbagger.rules.intern.Statistics;
+
+/**
+ * Result of a benchmark executed by {@link BenchmarkRule}. Samples are mean times of single operation 
+ * in nanoseconds, one sample for each measured iteration.
+ */
+public class BenchmarkResult {
+
+	private final String name;
+	
+	private final Statistics statistics;
+	
+	private final double bytesPerOp;
+	
+	BenchmarkResult(String name, double[] samples) {
+		this(name, samples, Double.NaN);
+	}
+	
+	BenchmarkResult(String name, double[] samples, double bytesPerOp) {
+		this.name = name;
+		this.statistics = new Statistics(samples);
+		this.bytesPerOp = bytesPerOp;
+	}
+	
+	/**
+	 * @return name of the benchmark
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return number of measured iterations
+	 */
+	public int getIterations() {
+		return statistics.getCount();
+	}
+	
+	/**
+	 * @return mean time of operation in nanoseconds
+	 */
+	public double getMeanNanosPerOp() {
+		return statistics.getMean();
+	}
+	
+	/**
+	 * @return time of operation in fastest iteration in nanoseconds
+	 */
+	public double getMinNanosPerOp() {
+		return statistics.getMin();
+	}
+	
+	/**
+	 * @return standard deviation of iteration results in nanoseconds
+	 */
+	public double getStandardDeviation() {
+		return statistics.getStandardDeviation();
+	}
+	
+	/**
+	 * @return half width of 99.9% confidence interval of the mean in nanoseconds
+	 */
+	public double getError() {
+		return statistics.getError();
+	}
+	
+	/**
+	 * @return lower bound of 99.9% confidence interval of the mean
+	 */
+	public double getLowerBound() {
+		return statistics.getMean() - statistics.getError();
+	}
+	
+	/**
+	 * @return upper bound of 99.9% confidence interval of the mean
+	 */
+	public double getUpperBound() {
+		return statistics.getMean() + statistics.getError();
+	}
+	
+	/**
+	 * @return mean bytes allocated by operation, NaN if allocation wasn't measured
+	 */
+	public double getBytesPerOp() {
+		return bytesPerOp;
+	}
+	
+	@Override
+	public String toString() {
+		String result = String.format("%s: %.3f +- %.3f ns/op (99.9%% CI [%.3f, %.3f]), stddev %.3f, min %.3f, max %.3f, %d iterations", 
+				name, getMeanNanosPerOp(), getError(), getLowerBound(), getUpperBound(), getStandardDeviation(), 
+				statistics.getMin(), statistics.getMax(), getIterations());
+		if (!Double.isNaN(bytesPerOp))
+			result += String.format(", %.1f B/op", bytesPerOp);
+		return result;
+	}
+}
@@ -0,0 +1,126 @@
+package org.wowbagger.rules;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.wowbagger.rules.annotation.Benchmark;
+import org.wowbagger.rules.intern.ThreadAllocation;
+
+/**
+ * Rule runs tests annotated with {@link Benchmark} as microbenchmarks.
+ * 
+ * Each fork runs warmup iterations followed by measured iterations. In every iteration test is invoked repeatedly 
+ * for {@link Benchmark#iterationMs()}, invocations are done in batches so time is not read after each one.
+ * Result of each measured iteration is mean time of one operation, rule logs {@link BenchmarkResult} with mean,
+ * standard deviation and 99.9% confidence interval and can verify {@link Benchmark#maxNanosPerOp()}.
+ * 
+ * Forks are executed in the same JVM, so they don't reset JIT profile like real forks do, they only repeat warmup 
+ * after garbage collection. Values computed by benchmark should be passed to {@link #blackhole()} to prevent 
+ * dead code elimination. Each invocation contains also overhead of JUnit statement (befores, afters and reflective 
+ * call), so very short operations should be measured in a loop inside the test.
+ * 
+ * Sample usage:
+ * <pre>
+	&#064;Rule
+	public BenchmarkRule benchmark = new BenchmarkRule();
+	
+	&#064;Benchmark(forks = 2, measurementIterations = 20, maxNanosPerOp = 500)
+	&#064;Test
+	public void parse() {
+	   benchmark.blackhole().consume(Integer.parseInt("12345"));
+	}
+ * </pre>
+ * 
+ * @see Blackhole
+ */
+public class BenchmarkRule implements TestRule {
+
+	private static final Logger LOGGER = Logger.getLogger(BenchmarkRule.class.getName());
+	
+	/** Part of iteration time after which batch size stops growing. */
+	private static final int BATCHES_PER_ITERATION = 100;
+	
+	private final Blackhole blackhole = new Blackhole();
+	
+	private volatile BenchmarkResult lastResult;
+	
+	/**
+	 * @return sink for values computed by benchmark
+	 */
+	public Blackhole blackhole() {
+		return blackhole;
+	}
+	
+	/**
+	 * @return result of the last benchmark executed by this rule, null if there was none
+	 */
+	public BenchmarkResult getLastResult() {
+		return lastResult;
+	}
+	
+	@Override
+	public Statement apply(final Statement base, final Description description) {
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				Benchmark benchmark = description.getAnnotation(Benchmark.class);
+				if (benchmark == null) {
+					base.evaluate();
+					return;
+				}
+				long iterationNanos = TimeUnit.MILLISECONDS.toNanos(benchmark.iterationMs());
+				double[] samples = new double[benchmark.forks() * benchmark.measurementIterations()];
+				int sample = 0;
+				for (int fork = 0; fork < benchmark.forks(); fork++) {
+					System.gc();
+					for (int i = 0; i < benchmark.warmupIterations(); i++) {
+						iteration(base, iterationNanos, null);
+					}
+					for (int i = 0; i < benchmark.measurementIterations(); i++) {
+						samples[sample++] = iteration(base, iterationNanos, null);
+					}
+				}
+				BenchmarkResult result = new BenchmarkResult(description.getDisplayName(), samples);
+				lastResult = result;
+				LOGGER.info(result.toString());
+				if (benchmark.maxNanosPerOp() >= 0 && result.getMeanNanosPerOp() > benchmark.maxNanosPerOp())
+					Assert.fail(String.format("Mean time %.3f ns/op exceeds limit %.3f ns/op", 
+							result.getMeanNanosPerOp(), benchmark.maxNanosPerOp()));
+			}
+		};
+	}
+	
+	/**
+	 * Invokes statement for given time, batch size grows until single batch takes noticeable part of iteration.
+	 * @param allocation if not null and allocation is measurable, bytes allocated by current thread and number of 
+	 * operations are added to its first and second element
+	 * @return mean time of operation in nanoseconds
+	 */
+	static double iteration(Statement statement, long iterationNanos, long[] allocation) throws Throwable {
+		long operations = 0;
+		long batch = 1;
+		long bytes = allocation != null ? ThreadAllocation.currentThread() : -1;
+		long begin = System.nanoTime();
+		long deadline = begin + iterationNanos;
+		long now;
+		do {
+			long batchBegin = System.nanoTime();
+			for (long i = 0; i < batch; i++) {
+				statement.evaluate();
+			}
+			operations += batch;
+			now = System.nanoTime();
+			if ((now - batchBegin) * BATCHES_PER_ITERATION < iterationNanos)
+				batch *= 2;
+		} while (now - deadline < 0);
+		if (bytes >= 0) {
+			allocation[0] += ThreadAllocation.currentThread() - bytes;
+			allocation[1] += operations;
+		}
+		return (double) (now - begin) / operations;
+	}
+}
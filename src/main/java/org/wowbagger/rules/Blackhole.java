@@ -0,0 +1,58 @@
+package org.wowbagger.rules;
+
+/**
+ * Sink for values computed by benchmarks. Consumed values are considered used by JIT compiler, so computation 
+ * of the value can't be eliminated as dead code. Idea comes from JMH.
+ * 
+ * Each consume method compares value with two volatile fields which never hold equal values, so the condition is 
+ * never true, but compiler can't prove it. Objects are stored to a field from time to time with decreasing
+ * probability.
+ * 
+ * @see BenchmarkRule
+ */
+public class Blackhole {
+
+	private volatile boolean bool1 = false;
+	private volatile boolean bool2 = true;
+	private volatile int int1 = 1;
+	private volatile int int2 = 2;
+	private volatile long long1 = 1;
+	private volatile long long2 = 2;
+	private volatile double double1 = 1;
+	private volatile double double2 = 2;
+	
+	private volatile Object sink;
+	
+	private int random = (int) System.nanoTime();
+	private int randomMask = 1;
+	
+	public void consume(Object object) {
+		int mask = randomMask;
+		int next = random * 1664525 + 1013904223;
+		random = next;
+		if ((next & mask) == 0) {
+			sink = object;
+			randomMask = (mask << 1) + 1;
+		}
+	}
+	
+	public void consume(boolean value) {
+		if (value == bool1 && value == bool2)
+			throw new IllegalStateException("Blackhole fields are broken");
+	}
+	
+	public void consume(int value) {
+		if (value == int1 && value == int2)
+			throw new IllegalStateException("Blackhole fields are broken");
+	}
+	
+	public void consume(long value) {
+		if (value == long1 && value == long2)
+			throw new IllegalStateException("Blackhole fields are broken");
+	}
+	
+	public void consume(double value) {
+		if (value == double1 && value == double2)
+			throw new IllegalStateException("Blackhole fields are broken");
+	}
+}
@@ -0,0 +1,193 @@
+package org.wowbagger.rules;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.wowbagger.rules.intern.LatencyHistogram;
+
+/**
+ * Result of a test executed by {@link ConcurrentRule}.
+ * 
+ * Contains number of operations (test invocations) done by each thread and time of whole run, measured from 
+ * the moment threads were released until the last one finished, and skew of threads start. Latency of every invocation is recorded
+ * in a histogram, report provides its percentiles. When JVM supports thread contention monitoring, report
+ * contains also how many times and how long each thread was blocked on monitors.
+ */
+public class ConcurrentReport {
+	
+	private final String name;
+	
+	private final long[] operations;
+	
+	private final long elapsedNanos;
+	
+	private final LatencyHistogram latency;
+	
+	/** Pairs {count, milliseconds} of blocking for each thread, null items if not available. */
+	private final long[][] blocked;
+	
+	private final long startSkewNanos;
+
+	ConcurrentReport(String name, long[] operations, long elapsedNanos, LatencyHistogram latency, long[][] blocked, 
+			long startSkewNanos) {
+		this.name = name;
+		this.operations = operations.clone();
+		this.elapsedNanos = elapsedNanos;
+		this.latency = latency;
+		this.blocked = blocked.clone();
+		this.startSkewNanos = startSkewNanos;
+	}
+	
+	/**
+	 * @return name of the test method
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return number of threads
+	 */
+	public int getThreads() {
+		return operations.length;
+	}
+	
+	/**
+	 * @param thread index of the thread
+	 * @return number of operations done by given thread
+	 */
+	public long getOperations(int thread) {
+		return operations[thread];
+	}
+	
+	/**
+	 * @return number of operations done by all threads
+	 */
+	public long getTotalOperations() {
+		long total = 0;
+		for (int i = 0; i < operations.length; i++) {
+			total += operations[i];
+		}
+		return total;
+	}
+	
+	/**
+	 * @return time of the run in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	/**
+	 * @return throughput of all threads
+	 */
+	public double getOperationsPerSecond() {
+		if (elapsedNanos <= 0)
+			return 0;
+		return getTotalOperations() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+	
+	/**
+	 * @return time in nanoseconds between start of the first and the last thread
+	 */
+	public long getStartSkewNanos() {
+		return startSkewNanos;
+	}
+	
+	/**
+	 * @param percentile percentile in range 0-100, e.g. 99.9
+	 * @return latency of single invocation in nanoseconds below which given percent of invocations fall
+	 */
+	public long getLatencyPercentile(double percentile) {
+		return latency.getPercentile(percentile);
+	}
+	
+	/**
+	 * @return latency of the slowest invocation in nanoseconds
+	 */
+	public long getMaxLatency() {
+		return latency.getMax();
+	}
+	
+	/**
+	 * @param thread index of the thread
+	 * @return how many times given thread was blocked on monitor, -1 if not available
+	 */
+	public long getBlockedCount(int thread) {
+		return blocked[thread] == null ? -1 : blocked[thread][0];
+	}
+	
+	/**
+	 * @param thread index of the thread
+	 * @return time in milliseconds for which given thread was blocked on monitors, -1 if not available
+	 */
+	public long getBlockedMillis(int thread) {
+		return blocked[thread] == null ? -1 : blocked[thread][1];
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(name).append(": ").append(getThreads()).append(" threads, ")
+			.append(getTotalOperations()).append(" ops in ")
+			.append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append(" ms, ")
+			.append(String.format("%.1f", getOperationsPerSecond())).append(" ops/s, start skew ")
+			.append(micros(startSkewNanos)).append(" us");
+		sb.append(", per thread [");
+		for (int i = 0; i < operations.length; i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append(operations[i]);
+		}
+		sb.append("], latency us p50=").append(micros(getLatencyPercentile(50)))
+			.append(" p90=").append(micros(getLatencyPercentile(90)))
+			.append(" p99=").append(micros(getLatencyPercentile(99)))
+			.append(" p99.9=").append(micros(getLatencyPercentile(99.9)))
+			.append(" max=").append(micros(getMaxLatency()));
+		if (isBlockingAvailable()) {
+			sb.append(", blocked count/ms per thread [");
+			for (int i = 0; i < blocked.length; i++) {
+				if (i > 0)
+					sb.append(", ");
+				sb.append(getBlockedCount(i)).append('/').append(getBlockedMillis(i));
+			}
+			sb.append(']');
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Formats table of throughput for runs with different number of threads. Speedup is relative to the first run,
+	 * efficiency is speedup per thread relative to the first run.
+	 * @param curve reports ordered by number of threads
+	 * @return formatted table
+	 */
+	public static String scalabilityTable(List<ConcurrentReport> curve) {
+		StringBuilder sb = new StringBuilder();
+		if (curve.isEmpty())
+			return sb.toString();
+		ConcurrentReport base = curve.get(0);
+		sb.append(base.getName()).append(" scalability\n");
+		sb.append(String.format("%8s %12s %14s %8s %10s%n", "threads", "ops", "ops/s", "speedup", "efficiency"));
+		for (ConcurrentReport report : curve) {
+			double speedup = base.getOperationsPerSecond() > 0 
+					? report.getOperationsPerSecond() / base.getOperationsPerSecond() : 0;
+			double efficiency = speedup * base.getThreads() / report.getThreads();
+			sb.append(String.format("%8d %12d %14.1f %8.2f %9.0f%%%n", report.getThreads(), report.getTotalOperations(), 
+					report.getOperationsPerSecond(), speedup, efficiency * 100));
+		}
+		return sb.toString();
+	}
+	
+	private boolean isBlockingAvailable() {
+		for (int i = 0; i < blocked.length; i++) {
+			if (blocked[i] != null)
+				return true;
+		}
+		return false;
+	}
+	
+	private static String micros(long nanos) {
+		return String.format("%.1f", nanos / 1000.0);
+	}
+}
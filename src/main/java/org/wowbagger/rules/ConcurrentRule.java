@@ -1,16 +1,105 @@
 package org.wowbagger.rules;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
 
+import org.junit.Assert;
 import org.junit.rules.MethodRule;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.Statement;
 import org.wowbagger.rules.annotation.Concurrent;
+import org.wowbagger.rules.annotation.MaxLatency;
+import org.wowbagger.rules.annotation.Warmup;
+import org.wowbagger.rules.intern.LatencyHistogram;
+import org.wowbagger.rules.intern.StartGate;
+import org.wowbagger.rules.intern.ThreadMonitor;
+import org.wowbagger.rules.intern.VirtualThreads;
 
-
+/**
+ * Rule runs test methods annotated with {@link Concurrent} in many threads at the same time.
+ * 
+ * By default every test starts new threads. When rule is created with {@link WorkerPool} invocations 
+ * run on pooled threads, which are reused by following tests. Tests with {@link Concurrent#virtual()} run
+ * on virtual threads (pool is not used then), on JVM without virtual threads rule falls back to platform threads,
+ * test with more than 256 virtual threads fails there with {@link UnsupportedOperationException}.
+ * 
+ * Each thread invokes test once, or repeatedly when {@link Concurrent#iterations()} or {@link Concurrent#durationMs()}
+ * are given. After the test rule logs {@link ConcurrentReport} with number of operations and throughput, 
+ * last report is available by {@link #getLastReport()}. Report contains also latency percentiles of invocations,
+ * which can be verified with {@link MaxLatency}.
+ * 
+ * With {@link Concurrent#scalability()} test is repeated with 1, 2, 4 ... threads up to {@link Concurrent#value()}
+ * and rule logs throughput, speedup and efficiency for each number of threads. 
+ * 
+ * Failures of all threads are collected and reported after the run, single failure is rethrown as is, more failures
+ * are combined into one assertion error. With {@link Concurrent#failFast()} the first failure interrupts all
+ * remaining threads.
+ * 
+ * While test runs, rule watches threads for deadlocks and for {@link Concurrent#timeoutMs()}. When deadlock is found
+ * or timeout expires, test fails with dump of worker stacks and owned locks. When JVM supports contention monitoring,
+ * report contains also number of blockings and blocked time of each thread. Monitoring is enabled only while the test
+ * runs, its previous state is restored afterwards.
+ * 
+ * Threads are released when all of them are ready. By default they wait parked on a latch, with 
+ * {@link Concurrent#spinStart()} they busy spin, which makes their start much closer. Report contains skew between 
+ * the first and the last started thread.
+ * 
+ * Tests annotated with {@link Warmup} are warmed up by each thread before it arrives at the start gate,
+ * warmup invocations are not measured.
+ * 
+ * Sample usage:
+ * <pre>
+	&#064;Rule
+	public ConcurrentRule rule = new ConcurrentRule(WorkerPool.shared());
+	
+	&#064;Concurrent(64)
+	&#064;Test
+	public void test() {
+	   ...
+	}
+ * </pre>
+ * 
+ * @see WorkerPool
+ */
 @SuppressWarnings("deprecation")
 public final class ConcurrentRule implements MethodRule {
     
+    private static final Logger LOGGER = Logger.getLogger(ConcurrentRule.class.getName());
+    
+    /** How often running test is checked for deadlocks and timeout. */
+    private static final long WATCHDOG_INTERVAL_MS = 100;
+    
+    /** Maximal number of platform threads started instead of virtual ones. */
+    private static final int MAX_PLATFORM_FALLBACK = 256;
+    
+    /** Pool of reusable workers, null if each test starts own threads. */
+    private final WorkerPool pool;
+    
+    private volatile ConcurrentReport lastReport;
+    
+    private volatile List<ConcurrentReport> lastScalability;
+    
+    public ConcurrentRule() {
+        this(null);
+    }
+    
+    /**
+     * @param pool pool of workers used for invocations, null to start new threads for each test
+     */
+    public ConcurrentRule(WorkerPool pool) {
+        this.pool = pool;
+    }
+    
     public Statement apply(Statement statement, final FrameworkMethod frameworkMethod, final Object o) {
         return new Statement() {
             @Override
@@ -19,40 +108,340 @@ public final class ConcurrentRule implements MethodRule {
                 if (concurrent == null)
                     frameworkMethod.invokeExplosively(o);
                 else {
-                    final String name = frameworkMethod.getName();
-                    final Thread[] threads = new Thread[concurrent.value()];
-                    final CountDownLatch go = new CountDownLatch(1);
-                    final CountDownLatch finished = new CountDownLatch(threads.length);
-                    for (int i = 0; i < threads.length; i++) {
-                        threads[i] = new Thread(new Runnable() {
-                            
-                            public void run() {
-                                try {
-                                    go.await();
-                                } catch (InterruptedException e) {
-                                    Thread.currentThread().interrupt();
-                                }
-                                try {
-                                    frameworkMethod.invokeExplosively(o);
-                                } catch (Throwable throwable) {
-                                    if (throwable instanceof RuntimeException)
-                                        throw (RuntimeException) throwable;
-                                    if (throwable instanceof Error)
-                                        throw (Error) throwable;
-                                    RuntimeException r = new RuntimeException(throwable.getMessage(), throwable);
-                                    r.setStackTrace(throwable.getStackTrace());
-                                    throw r;
-                                } finally {
-                                    finished.countDown();
-                                }
+                    int threads = threads(concurrent);
+                    ThreadMonitor.startContentionMonitoring();
+                    try {
+                        if (concurrent.scalability()) {
+                            List<ConcurrentReport> curve = new ArrayList<ConcurrentReport>();
+                            for (int count = 1; count < threads; count *= 2) {
+                                curve.add(execute(frameworkMethod, o, concurrent, count));
                             }
-                        }, name + "-Thread-" + i);
-                        threads[i].start();
+                            curve.add(execute(frameworkMethod, o, concurrent, threads));
+                            lastScalability = Collections.unmodifiableList(curve);
+                            LOGGER.info(ConcurrentReport.scalabilityTable(curve));
+                        } else {
+                            execute(frameworkMethod, o, concurrent, threads);
+                        }
+                    } finally {
+                        ThreadMonitor.stopContentionMonitoring();
                     }
-                    go.countDown();
-                    finished.await();
+                    verifyLatency(frameworkMethod.getAnnotation(MaxLatency.class), lastReport);
                 }
             }
         };
     }
-}
\ No newline at end of file
+    
+    /**
+     * Runs test in given number of threads.
+     */
+    private ConcurrentReport execute(final FrameworkMethod frameworkMethod, final Object o, Concurrent concurrent, 
+            int threads) throws Throwable {
+        final String name = frameworkMethod.getName();
+        final boolean virtual = useVirtualThreads(concurrent, threads);
+        final long iterations = iterations(concurrent);
+        final long durationNanos = TimeUnit.MILLISECONDS.toNanos(concurrent.durationMs());
+        final long[] operations = new long[threads];
+        final LatencyHistogram[] latencies = new LatencyHistogram[threads];
+        final long[][] blocked = new long[threads][];
+        final StartGate gate = new StartGate(threads, concurrent.spinStart());
+        final long[] startTimes = new long[threads];
+        final CountDownLatch finished = new CountDownLatch(threads);
+        final Queue<Failure> failures = new ConcurrentLinkedQueue<Failure>();
+        final AtomicReferenceArray<Thread> workers = new AtomicReferenceArray<Thread>(threads);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final boolean failFast = concurrent.failFast();
+        final Warmup warmup = frameworkMethod.getAnnotation(Warmup.class);
+        final List<Future<?>> pooled = new ArrayList<Future<?>>();
+        // timeout covers warmup too
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(concurrent.timeoutMs());
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            final LatencyHistogram latency = new LatencyHistogram();
+            latencies[i] = latency;
+            Runnable worker = new Runnable() {
+                
+                public void run() {
+                    workers.set(index, Thread.currentThread());
+                    boolean warmedUp = warmUp(warmup, frameworkMethod, o, failures);
+                    gate.pass();
+                    startTimes[index] = System.nanoTime();
+                    long[] blockedBefore = ThreadMonitor.blocked(Thread.currentThread());
+                    long done = 0;
+                    long end = System.nanoTime() + durationNanos;
+                    try {
+                        while (warmedUp && done < iterations && !cancelled.get()) {
+                            long begin = System.nanoTime();
+                            frameworkMethod.invokeExplosively(o);
+                            long now = System.nanoTime();
+                            latency.record(now - begin);
+                            done++;
+                            if (durationNanos > 0 && now - end >= 0)
+                                break;
+                        }
+                    } catch (Throwable throwable) {
+                        // interruption caused by cancellation isn't a failure
+                        if (!(cancelled.get() && throwable instanceof InterruptedException))
+                            failures.add(new Failure(Thread.currentThread().getName(), throwable));
+                        if (failFast && cancelled.compareAndSet(false, true))
+                            cancel(workers, index);
+                    } finally {
+                        blocked[index] = blockedSince(blockedBefore);
+                        workers.set(index, null);
+                        operations[index] = done;
+                        finished.countDown();
+                    }
+                }
+            };
+            Future<?> future;
+            try {
+                future = start(worker, name + "-Thread-" + i, virtual);
+            } catch (Throwable e) {
+                // thread which failed to start never arrives at the gate, started workers must not wait for it
+                cancelled.set(true);
+                cancel(workers, -1);
+                gate.open();
+                throw e;
+            }
+            if (future != null)
+                pooled.add(future);
+        }
+        long started;
+        try {
+            while (!gate.awaitReady(WATCHDOG_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                watch(finished, workers, concurrent.timeoutMs(), deadline);
+            }
+            started = System.nanoTime();
+            gate.open();
+            await(finished, workers, concurrent.timeoutMs(), deadline);
+        } catch (AssertionError e) {
+            cancelled.set(true);
+            cancel(workers, -1);
+            // workers which are still warming up must not wait for the gate
+            gate.open();
+            throw e;
+        }
+        long elapsed = System.nanoTime() - started;
+        // pooled workers are released before next test, so it can reuse them
+        for (Future<?> future : pooled) {
+            future.get();
+        }
+        LatencyHistogram latency = new LatencyHistogram();
+        for (int i = 0; i < threads; i++) {
+            latency.add(latencies[i]);
+        }
+        ConcurrentReport report = new ConcurrentReport(name, operations, elapsed, latency, blocked, 
+                skew(startTimes));
+        report(report);
+        verifyFailures(failures, threads);
+        return report;
+    }
+    
+    /**
+     * Warms up test in current thread, failure of warmup is reported as failure of the thread.
+     * @return true if warmup succeeded
+     */
+    private static boolean warmUp(Warmup warmup, final FrameworkMethod frameworkMethod, final Object o, 
+            Queue<Failure> failures) {
+        try {
+            WarmupRule.warmUp(warmup, new Statement() {
+                @Override
+                public void evaluate() throws Throwable {
+                    frameworkMethod.invokeExplosively(o);
+                }
+            });
+            return true;
+        } catch (Throwable throwable) {
+            failures.add(new Failure(Thread.currentThread().getName(), throwable));
+            return false;
+        }
+    }
+    
+    /**
+     * Waits for workers and watches them for deadlocks and timeout. Throws assertion error with dump of the workers
+     * if they are deadlocked or timeout expired.
+     */
+    private static void await(CountDownLatch finished, AtomicReferenceArray<Thread> workers, long timeoutMs, 
+            long deadline) throws InterruptedException {
+        while (!finished.await(WATCHDOG_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            watch(finished, workers, timeoutMs, deadline);
+        }
+    }
+    
+    /**
+     * Single check of the watchdog, fails if workers are deadlocked or timeout expired.
+     */
+    private static void watch(CountDownLatch finished, AtomicReferenceArray<Thread> workers, long timeoutMs, 
+            long deadline) {
+        long[] ids = ids(workers);
+        long[] deadlocked = ThreadMonitor.findDeadlocked(ids);
+        if (deadlocked.length > 0)
+            Assert.fail("Deadlock of " + deadlocked.length + " threads detected\n" + ThreadMonitor.dump(deadlocked) 
+                    + "All running threads:\n" + ThreadMonitor.dump(ids));
+        if (timeoutMs > 0 && System.nanoTime() - deadline >= 0)
+            Assert.fail("Test timed out after " + timeoutMs + " ms, " + finished.getCount() 
+                    + " threads still running\n" + ThreadMonitor.dump(ids));
+    }
+    
+    /**
+     * Difference between the first and the last start.
+     */
+    private static long skew(long[] startTimes) {
+        long first = startTimes[0];
+        long last = startTimes[0];
+        for (int i = 1; i < startTimes.length; i++) {
+            if (startTimes[i] - first < 0)
+                first = startTimes[i];
+            if (startTimes[i] - last > 0)
+                last = startTimes[i];
+        }
+        return last - first;
+    }
+    
+    /**
+     * Identifiers of running workers.
+     */
+    private static long[] ids(AtomicReferenceArray<Thread> workers) {
+        long[] ids = new long[workers.length()];
+        int running = 0;
+        for (int i = 0; i < workers.length(); i++) {
+            Thread worker = workers.get(i);
+            if (worker != null)
+                ids[running++] = worker.getId();
+        }
+        return Arrays.copyOf(ids, running);
+    }
+    
+    /**
+     * Blocking of current thread since given statistics, null if not available.
+     */
+    private static long[] blockedSince(long[] before) {
+        long[] after = ThreadMonitor.blocked(Thread.currentThread());
+        if (before == null || after == null)
+            return null;
+        return new long[] { after[0] - before[0], after[1] - before[1] };
+    }
+    
+    /**
+     * Interrupts all running workers except the failed one.
+     */
+    private static void cancel(AtomicReferenceArray<Thread> workers, int failed) {
+        for (int i = 0; i < workers.length(); i++) {
+            Thread worker = workers.get(i);
+            if (i != failed && worker != null)
+                worker.interrupt();
+        }
+    }
+    
+    /**
+     * Rethrows single failure, more failures are combined into one assertion error.
+     */
+    private static void verifyFailures(Queue<Failure> failures, int threads) throws Throwable {
+        if (failures.isEmpty())
+            return;
+        if (failures.size() == 1)
+            throw failures.peek().error;
+        StringBuilder message = new StringBuilder();
+        message.append(failures.size()).append(" of ").append(threads).append(" threads failed:");
+        for (Failure failure : failures) {
+            message.append("\n  ").append(failure.thread).append(": ").append(failure.error);
+        }
+        AssertionError error = new AssertionError(message.toString());
+        error.initCause(failures.peek().error);
+        throw error;
+    }
+    
+    /**
+     * Returns report of the last concurrent test executed by this rule.
+     * @return report or null if no concurrent test was executed
+     */
+    public ConcurrentReport getLastReport() {
+        return lastReport;
+    }
+    
+    /**
+     * Returns reports of the last test executed in scalability mode, one report for each number of threads.
+     * @return reports ordered by number of threads or null if no test was executed in scalability mode
+     */
+    public List<ConcurrentReport> getLastScalability() {
+        return lastScalability;
+    }
+    
+    private void report(ConcurrentReport report) {
+        lastReport = report;
+        LOGGER.info(report.toString());
+    }
+    
+    /**
+     * Number of threads, not positive {@link Concurrent#value()} means number of available processors.
+     */
+    private static int threads(Concurrent concurrent) {
+        if (concurrent.value() > 0)
+            return concurrent.value();
+        return Runtime.getRuntime().availableProcessors();
+    }
+    
+    private static void verifyLatency(MaxLatency limits, ConcurrentReport report) {
+        if (limits == null)
+            return;
+        verifyLatency("p50", limits.p50(), limits.unit(), report.getLatencyPercentile(50));
+        verifyLatency("p90", limits.p90(), limits.unit(), report.getLatencyPercentile(90));
+        verifyLatency("p99", limits.p99(), limits.unit(), report.getLatencyPercentile(99));
+        verifyLatency("p99.9", limits.p999(), limits.unit(), report.getLatencyPercentile(99.9));
+        verifyLatency("max", limits.max(), limits.unit(), report.getMaxLatency());
+    }
+    
+    private static void verifyLatency(String percentile, long limit, TimeUnit unit, long nanos) {
+        if (limit >= 0 && nanos > unit.toNanos(limit))
+            Assert.fail("Latency " + percentile + " " + nanos + " ns exceeds limit " + limit + " " + unit);
+    }
+    
+    /**
+     * Invocations per thread: explicit {@link Concurrent#iterations()}, unlimited for duration based tests, 
+     * single invocation otherwise.
+     */
+    private static long iterations(Concurrent concurrent) {
+        if (concurrent.iterations() > 0)
+            return concurrent.iterations();
+        return concurrent.durationMs() > 0 ? Long.MAX_VALUE : 1;
+    }
+    
+    private boolean useVirtualThreads(Concurrent concurrent, int threads) {
+        if (!concurrent.virtual())
+            return false;
+        if (!VirtualThreads.isSupported()) {
+            if (threads > MAX_PLATFORM_FALLBACK)
+                throw new UnsupportedOperationException("Virtual threads are not supported by this JVM, " + threads 
+                        + " platform threads would be started instead, fallback is limited to " 
+                        + MAX_PLATFORM_FALLBACK + " threads");
+            LOGGER.warning("Virtual threads are not supported by this JVM, platform threads will be used");
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Failure of single worker.
+     */
+    private static class Failure {
+        private final String thread;
+        private final Throwable error;
+        
+        Failure(String thread, Throwable error) {
+            this.thread = thread;
+            this.error = error;
+        }
+    }
+    
+    /**
+     * @return future of pooled worker, null for other threads
+     */
+    private Future<?> start(Runnable worker, String threadName, boolean virtual) {
+        if (virtual)
+            VirtualThreads.start(worker, threadName);
+        else if (pool == null)
+            new Thread(worker, threadName).start();
+        else
+            return pool.execute(worker, threadName);
+        return null;
+    }
+}
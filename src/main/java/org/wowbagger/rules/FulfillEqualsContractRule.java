@@ -1,7 +1,14 @@
 package org.wowbagger.rules;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import junit.framework.AssertionFailedError;
@@ -11,6 +18,12 @@ import org.junit.Rule;
 import org.junit.rules.TestRule;
 import org.junit.runner.Description;
 import org.junit.runners.model.Statement;
+import org.wowbagger.rules.annotation.Immutable;
+import org.wowbagger.rules.intern.ClassIndex;
+import org.wowbagger.rules.intern.HashDistribution;
+import org.wowbagger.rules.intern.RandomFields;
+import org.wowbagger.rules.intern.SizedFields;
+import org.wowbagger.rules.intern.ThreadAllocation;
 
 
 /**
@@ -34,6 +47,25 @@ import org.junit.runners.model.Statement;
  *	
  *	
  * </pre>
+ * Instances compared by checks are created once per test, by no argument constructor or by {@link Factory} 
+ * given to {@link #FulfillEqualsContractRule(Factory)}.
+ * Optionally the rule checks distribution of hash codes of many distinct instances, which are filled with random 
+ * values or created by {@link Generator}:
+ * <pre>
+ * 	&#064;ClassRule
+ *	public static FulfillEqualsContractRule&lt;MyObject> rule = new FulfillEqualsContractRule&lt;MyObject>( new MyObject() )
+ *		.checkHashDistribution(10000).maxCollisionRate(0.001);
+ * </pre>
+ * Cost of equals and hashCode can be limited by budgets of time and allocated bytes per call, they are measured 
+ * after warmup in repeated iterations, on equal instances with fields filled with random values:
+ * <pre>
+ * 	&#064;ClassRule
+ *	public static FulfillEqualsContractRule&lt;MyObject> rule = new FulfillEqualsContractRule&lt;MyObject>( new MyObject() )
+ *		.hashCodeBudget(50, 0).equalsBudget(100, 0);
+ * </pre>
+ * Classes annotated with {@link Immutable} are checked for recomputed hashCode: repeated hashCode of the same 
+ * instance with small and large String, collection and array fields shouldn't differ much.
+ * All classes of a package which declare equals can be checked by rule created with {@link #forPackage(String)}.
  *  
  * @see TestRule
  * @see Rule
@@ -48,43 +80,298 @@ public class FulfillEqualsContractRule<T> implements TestRule {
 
 	private final static Logger LOGGER = Logger.getLogger(FulfillEqualsContractRule.class.getName());
 	
+	/** No argument constructors, resolved once per class. */
+	private static final ClassValue<Constructor<?>> CONSTRUCTORS = new ClassValue<Constructor<?>>() {
+		@Override
+		protected Constructor<?> computeValue(Class<?> type) {
+			try {
+				Constructor<?> constructor = type.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				return constructor;
+			} catch (NoSuchMethodException e) {
+				return null;
+			}
+		}
+	};
+	
+	/**
+	 * Creates instances compared by checks. Every call should return new instance, 
+	 * instances of same factory are supposed to be equal.
+	 * 
+	 * @param <T> Type of tests object
+	 */
+	public interface Factory<T> {
+		T create() throws Exception;
+	}
+	
+	/**
+	 * Creates distinct instances for analysis of hash codes.
+	 * 
+	 * @param <T> Type of tests object
+	 */
+	public interface Generator<T> {
+		T next(Random random) throws Exception;
+	}
+	
+	private static final long SEED = 0x5DEECE66DL;
+	
+	/** Sizes of fields of small and large instances compared by check of cached hashCode. */
+	private static final int SMALL_SIZE = 16;
+	private static final int LARGE_SIZE = 4096;
+	
+	/** Maximal ratio of hashCode times of large and small instance for cached hashCode. */
+	private static final double MAX_HASH_CODE_SCALING = 4;
+	
 	private T testObject;
+	
+	private Factory<? extends T> factory;
+	
+	/** Classes tested in package mode, null if single object is tested. */
+	private List<Class<?>> testClasses;
+	
+	private int hashSamples;
+	
+	private Generator<? extends T> generator;
+	
+	private double maxCollisionRate = 0.01;
+	
+	private double minBucketOccupancy = 0.5;
+	
+	private int maxBucketLength = HashDistribution.TREEIFY_THRESHOLD - 1;
+	
+	private double minAvalanche;
+	
+	private volatile HashDistribution lastHashDistribution;
+	
+	private double maxEqualsNanos = -1;
+	
+	private long maxEqualsBytes = -1;
+	
+	private double maxHashCodeNanos = -1;
+	
+	private long maxHashCodeBytes = -1;
+	
+	private int costWarmupIterations = 3;
+	
+	private int costIterations = 5;
+	
+	private long costIterationMs = 20;
+	
+	private volatile BenchmarkResult lastEqualsCost;
+	
+	private volatile BenchmarkResult lastHashCodeCost;
 
 
+	/**
+	 * Instances for checks are created by no argument constructor of object class.
+	 */
+	@SuppressWarnings("unchecked")
 	public FulfillEqualsContractRule(T object)  {
 		testObject = object;		
+		factory = constructorFactory((Class<? extends T>) object.getClass());
+	}
+	
+	/**
+	 * Instances for checks are created by the factory, which allows to check classes without no argument 
+	 * constructor or to provide instances cheaply.
+	 */
+	public FulfillEqualsContractRule(Factory<? extends T> factory) {
+		this.factory = factory;
+	}
+	
+	private FulfillEqualsContractRule(List<Class<?>> classes) {
+		testClasses = classes;
+	}
+	
+	/**
+	 * Creates rule which checks equals contract of all classes in the package which declare equals and have 
+	 * no argument constructor. Classes are found in class files, other classes of the package are not loaded. 
+	 * Failures of all classes are reported together.
+	 * @param packageName name of the package, subpackages are not included
+	 * @throws IllegalArgumentException if the package can't be scanned or contains no such classes
+	 */
+	public static FulfillEqualsContractRule<Object> forPackage(String packageName) {
+		ClassIndex index = ClassIndex.scan(packageName);
+		List<Class<?>> classes = index.load(index.equalsClasses(), "classes declaring equals");
+		return new FulfillEqualsContractRule<Object>(classes);
+	}
+	
+	/**
+	 * @return classes checked by rule created with {@link #forPackage(String)}, null for other rules
+	 */
+	List<Class<?>> getTestedClasses() {
+		return testClasses;
+	}
+	
+	/**
+	 * Enables analysis of hash codes of given number of distinct instances. Instances are created by the factory
+	 * and their fields are filled with random values, unless {@link #generator(Generator)} is set. Analysis is 
+	 * skipped with warning when fewer than two distinct instances are produced, e.g. type has no fields to fill.
+	 */
+	public FulfillEqualsContractRule<T> checkHashDistribution(int samples) {
+		hashSamples = samples;
+		return this;
+	}
+	
+	/**
+	 * Sets generator of instances for analysis of hash codes. Avalanche isn't measured for generated instances.
+	 */
+	public FulfillEqualsContractRule<T> generator(Generator<? extends T> generator) {
+		this.generator = generator;
+		return this;
+	}
+	
+	/**
+	 * Maximal part of distinct instances with same hash code as another instance, default is 0.01.
+	 */
+	public FulfillEqualsContractRule<T> maxCollisionRate(double rate) {
+		maxCollisionRate = rate;
+		return this;
+	}
+	
+	/**
+	 * Minimal used HashMap buckets relative to number expected for random hash codes, default is 0.5.
+	 */
+	public FulfillEqualsContractRule<T> minBucketOccupancy(double occupancy) {
+		minBucketOccupancy = occupancy;
+		return this;
+	}
+	
+	/**
+	 * Maximal number of instances in one HashMap bucket, default is 7 - longer buckets are converted to trees.
+	 */
+	public FulfillEqualsContractRule<T> maxBucketLength(int length) {
+		maxBucketLength = length;
+		return this;
+	}
+	
+	/**
+	 * Minimal average of hash bits changed by one bit change of a field, relative to ideal 16 bits. Default is 0, 
+	 * because usual hashCode implementations (31 * result + field) change only few bits.
+	 */
+	public FulfillEqualsContractRule<T> minAvalanche(double avalanche) {
+		minAvalanche = avalanche;
+		return this;
+	}
+	
+	/**
+	 * @return result of last analysis of hash codes, null if it didn't run
+	 */
+	public HashDistribution getLastHashDistribution() {
+		return lastHashDistribution;
+	}
+	
+	/**
+	 * Sets budget of equals call on equal instances.
+	 * @param maxNanos maximal mean time of call in nanoseconds, negative for no limit
+	 * @param maxBytes maximal bytes allocated by call, negative for no limit; it is ignored if the JVM can't 
+	 * measure allocation
+	 */
+	public FulfillEqualsContractRule<T> equalsBudget(double maxNanos, long maxBytes) {
+		maxEqualsNanos = maxNanos;
+		maxEqualsBytes = maxBytes;
+		return this;
+	}
+	
+	/**
+	 * Sets budget of hashCode call.
+	 * @param maxNanos maximal mean time of call in nanoseconds, negative for no limit
+	 * @param maxBytes maximal bytes allocated by call, negative for no limit; it is ignored if the JVM can't 
+	 * measure allocation
+	 */
+	public FulfillEqualsContractRule<T> hashCodeBudget(double maxNanos, long maxBytes) {
+		maxHashCodeNanos = maxNanos;
+		maxHashCodeBytes = maxBytes;
+		return this;
+	}
+	
+	/**
+	 * Sets iterations of cost measurement, defaults are 3 warmup and 5 measured iterations of 20 ms.
+	 */
+	public FulfillEqualsContractRule<T> costMeasurement(int warmupIterations, int iterations, long iterationMs) {
+		costWarmupIterations = warmupIterations;
+		costIterations = iterations;
+		costIterationMs = iterationMs;
+		return this;
+	}
+	
+	/**
+	 * @return last measured cost of equals, null if it wasn't measured
+	 */
+	public BenchmarkResult getLastEqualsCost() {
+		return lastEqualsCost;
+	}
+	
+	/**
+	 * @return last measured cost of hashCode, null if it wasn't measured
+	 */
+	public BenchmarkResult getLastHashCodeCost() {
+		return lastHashCodeCost;
+	}
+	
+	/**
+	 * Factory which uses cached no argument constructor of the class.
+	 */
+	private static <T> Factory<T> constructorFactory(final Class<? extends T> type) {
+		final Constructor<?> constructor = CONSTRUCTORS.get(type);
+		return new Factory<T>() {
+			@Override
+			public T create() throws Exception {
+				if (constructor == null) {
+					throw new InstantiationException("Class " + type.getName() + " has no constructor without arguments");
+				}
+				return type.cast(constructor.newInstance());
+			}
+		};
 	}
 	
 	@Override
 	public Statement apply(final Statement base, final Description description) {
+		if (testClasses != null) {
+			return applyForClasses(base, description);
+		}
 		return new Statement() {
 			@Override
 			public void evaluate() throws Throwable {				
+				// instances are created once and shared by all checks
+				T objectX = factory.create();
+				T objectY = factory.create();
+				T objectZ = factory.create();
+				Class<?> type = testObject != null ? testObject.getClass() : objectX.getClass();
 				Method equals = null;
 				try {
-					equals = testObject.getClass().getDeclaredMethod("equals",
-							new Object().getClass());
+					equals = type.getDeclaredMethod("equals", Object.class);
 				} catch (NoSuchMethodException e) {
 					base.evaluate(); // OK class might not implementing equals - we should proceed
 				}
 				if (equals != null) {
 					// should implement also hashCode
 					try {
-						testObject.getClass().getDeclaredMethod("hashCode");
+						type.getDeclaredMethod("hashCode");
 					} catch (NoSuchMethodException e) {
 
 						throw new AssertionFailedError("Class "
-								+ testObject.getClass().getName()
+								+ type.getName()
 								+ " implements method equals but hashCode() isn't present!");
 					}
 				}
 				//implementation is here so time for testing real part of contract
-				testReflexivity();
-				testSymetricaly();
-				testTransitivity();
-				testConsistency();
-				testNullable();
-				testHashCode();	
+				testReflexivity(objectX);
+				testSymetricaly(objectX, objectY);
+				testTransitivity(objectX, objectY, objectZ);
+				testConsistency(objectX, objectY);
+				testNullable(testObject != null ? testObject : objectX);
+				testHashCode(objectX, objectY);	
+				if (hashSamples > 0) {
+					testHashDistribution(type);
+				}
+				Immutable immutable = type.getAnnotation(Immutable.class);
+				if (immutable != null) {
+					testCachedHashCode(type, immutable);
+				}
+				if (maxEqualsNanos >= 0 || maxEqualsBytes >= 0 || maxHashCodeNanos >= 0 || maxHashCodeBytes >= 0) {
+					testCost(type, objectX, objectY);
+				}
 				
 				base.evaluate();
 			}
@@ -92,12 +379,8 @@ public class FulfillEqualsContractRule<T> implements TestRule {
 			/**
 			 * if x.equals(y) returns true and y.equals(z) returns true, then x.equals(z) should return true.
 			 */
-			@SuppressWarnings("unchecked")
-			private void testTransitivity() throws Exception {
+			private void testTransitivity(T objectX, T objectY, T objectZ) {
 				LOGGER.info("Transitivity Test");
-				T objectX = (T) Class.forName(testObject.getClass().getName()).newInstance();
-				T objectY = (T) Class.forName(testObject.getClass().getName()).newInstance();
-				T objectZ = (T) Class.forName(testObject.getClass().getName()).newInstance();
 				boolean resultOne = objectX.equals(objectY);
 				boolean resultTwo = objectY.equals(objectZ);
 				if(resultOne == resultTwo){
@@ -109,34 +392,130 @@ public class FulfillEqualsContractRule<T> implements TestRule {
 			/**
 			 * equal objects must produce the same hash code
 			 */
-			@SuppressWarnings("unchecked")
-			private void testHashCode() throws Exception {
+			private void testHashCode(T objectX, T objectY) {
 				LOGGER.info("Hashcode Test");
-				T objectX = (T) Class.forName(testObject.getClass().getName()).newInstance();
-				T objectY = (T) Class.forName(testObject.getClass().getName()).newInstance();
 				boolean result = objectX.equals(objectY);
 				if(result){
 					Assert.assertTrue("equal objects must produce the same hash code", objectX.hashCode() == objectY.hashCode());
 				} 
 			}
 
+			/**
+			 * distinct objects should have well distributed hash codes
+			 */
+			private void testHashDistribution(Class<?> type) throws Exception {
+				LOGGER.info("Hash distribution Test");
+				HashDistribution distribution = analyzeHashes(type);
+				lastHashDistribution = distribution;
+				if (distribution == null) {
+					LOGGER.warning(type.getName() + " has no distinct instances, hash distribution isn't checked");
+					return;
+				}
+				LOGGER.info(type.getName() + ": " + distribution);
+				String problem = null;
+				if (distribution.getCollisionRate() > maxCollisionRate) {
+					problem = "collision rate is over " + maxCollisionRate;
+				} else if (distribution.getBucketOccupancy() < minBucketOccupancy) {
+					problem = "bucket occupancy is under " + minBucketOccupancy;
+				} else if (distribution.getMaxBucketLength() > maxBucketLength) {
+					problem = "bucket is longer than " + maxBucketLength;
+				} else if (distribution.getAvalanche() < minAvalanche) {
+					problem = "avalanche is under " + minAvalanche;
+				}
+				if (problem != null) {
+					throw new AssertionFailedError("Hash codes of " + type.getName() + " are poorly distributed, " + problem 
+							+ ": " + distribution);
+				}
+			}
+
+			/**
+			 * immutable objects with large fields should not recompute hash code
+			 */
+			private void testCachedHashCode(Class<?> type, Immutable immutable) throws Throwable {
+				LOGGER.info("Cached hashCode Test");
+				SizedFields fields = new SizedFields(type);
+				if (fields.isEmpty()) {
+					LOGGER.info(type.getName() + " has no String, collection or array fields, hashCode caching isn't checked");
+					return;
+				}
+				final T small = fields.fill(factory.create(), SMALL_SIZE);
+				final T large = fields.fill(factory.create(), LARGE_SIZE);
+				final Blackhole blackhole = new Blackhole();
+				BenchmarkResult smallCost = measure(type.getName() + ".hashCode of size " + SMALL_SIZE, new Statement() {
+					@Override
+					public void evaluate() {
+						blackhole.consume(small.hashCode());
+					}
+				});
+				BenchmarkResult largeCost = measure(type.getName() + ".hashCode of size " + LARGE_SIZE, new Statement() {
+					@Override
+					public void evaluate() {
+						blackhole.consume(large.hashCode());
+					}
+				});
+				// fastest iterations are least disturbed by GC and compilation
+				double scaling = largeCost.getMinNanosPerOp() / smallCost.getMinNanosPerOp();
+				if (scaling > MAX_HASH_CODE_SCALING) {
+					String message = String.format("hashCode of immutable %s is recomputed, it is %.1f times slower for "
+							+ "fields of size %d than of size %d", type.getName(), scaling, LARGE_SIZE, SMALL_SIZE);
+					if (immutable.cachedHashCode()) {
+						throw new AssertionFailedError(message);
+					}
+					LOGGER.warning(message);
+				}
+			}
+
+			/**
+			 * equals and hashCode should fit into budgets
+			 */
+			private void testCost(Class<?> type, T objectX, T objectY) throws Throwable {
+				LOGGER.info("Cost Test");
+				// default instances have mostly null and zero fields, which hide cost depending on values
+				RandomFields fields = new RandomFields(type);
+				if (!fields.isEmpty()) {
+					long seed = new Random(SEED).nextLong();
+					objectX = fields.fill(factory.create(), new Random(seed));
+					objectY = fields.fill(factory.create(), new Random(seed));
+				}
+				final T x = objectX;
+				final T y = objectY;
+				final Blackhole blackhole = new Blackhole();
+				if (maxEqualsNanos >= 0 || maxEqualsBytes >= 0) {
+					BenchmarkResult cost = measure(type.getName() + ".equals", new Statement() {
+						@Override
+						public void evaluate() {
+							blackhole.consume(x.equals(y));
+						}
+					});
+					lastEqualsCost = cost;
+					checkBudget(cost, maxEqualsNanos, maxEqualsBytes);
+				}
+				if (maxHashCodeNanos >= 0 || maxHashCodeBytes >= 0) {
+					BenchmarkResult cost = measure(type.getName() + ".hashCode", new Statement() {
+						@Override
+						public void evaluate() {
+							blackhole.consume(x.hashCode());
+						}
+					});
+					lastHashCodeCost = cost;
+					checkBudget(cost, maxHashCodeNanos, maxHashCodeBytes);
+				}
+			}
+
 			/**
 			 * x.equals(null) should return false
 			 */
-			private void testNullable() {
+			private void testNullable(T object) {
 				LOGGER.info("nullable Test");
-				Assert.assertFalse("x.equals(null) should return false", testObject.equals(null));
+				Assert.assertFalse("x.equals(null) should return false", object.equals(null));
 				
 			}
 
 			/**
 			 * multiple invocations of x.equals(y) consistently return true or consistently return false
 			 */
-			@SuppressWarnings("unchecked")
-			private void testConsistency() throws Exception {
+			private void testConsistency(T objectX, T objectY) {
 				LOGGER.info("Consistency Test");
-				T objectX = (T) Class.forName(testObject.getClass().getName()).newInstance();
-				T objectY = (T) Class.forName(testObject.getClass().getName()).newInstance();
 				boolean result = objectX.equals(objectY);
 				Assert.assertEquals(result, objectX.equals(objectY));
 				Assert.assertEquals(result, objectX.equals(objectY));
@@ -147,11 +526,8 @@ public class FulfillEqualsContractRule<T> implements TestRule {
 			/**
 			 * x.equals(y) and y.equals(x) should give same result
 			 */
-			@SuppressWarnings("unchecked")
-			private void testSymetricaly() throws Exception {
+			private void testSymetricaly(T objectX, T objectY) {
 				LOGGER.info("Symetricaly Test");
-				T objectX = (T) Class.forName(testObject.getClass().getName()).newInstance();
-				T objectY = (T) Class.forName(testObject.getClass().getName()).newInstance();
 				boolean result = objectX.equals(objectY);
 				Assert.assertEquals("x.equals(y) and y.equals(x) should give same result", result, objectX.equals(objectY));
 				Assert.assertEquals("x.equals(y) and y.equals(x) should give same result", result, objectY.equals(objectX));
@@ -159,18 +535,110 @@ public class FulfillEqualsContractRule<T> implements TestRule {
 
 			/**
 			 * x.equals(x) should be true
-			 * @throws NoSuchMethodException 
-			 * @throws InvocationTargetException 
-			 * @throws SecurityException 
-			 * @throws IllegalArgumentException 
 			 */
-			@SuppressWarnings("unchecked")
-			private void testReflexivity() throws Exception {
+			private void testReflexivity(T object) {
 				LOGGER.info("Reflexivity Test");
-				T object = (T) Class.forName(testObject.getClass().getName()).newInstance(); 
 				Assert.assertTrue("x.equals(x) should be true", object.equals(object));
 				
 			}
 		};
 	}
+	
+	private BenchmarkResult measure(String name, Statement call) throws Throwable {
+		long iterationNanos = TimeUnit.MILLISECONDS.toNanos(costIterationMs);
+		for (int i = 0; i < costWarmupIterations; i++) {
+			BenchmarkRule.iteration(call, iterationNanos, null);
+		}
+		double[] samples = new double[costIterations];
+		long[] allocation = new long[2];
+		for (int i = 0; i < costIterations; i++) {
+			samples[i] = BenchmarkRule.iteration(call, iterationNanos, allocation);
+		}
+		BenchmarkResult result = new BenchmarkResult(name, samples, 
+				ThreadAllocation.isSupported() ? (double) allocation[0] / allocation[1] : Double.NaN);
+		LOGGER.info(result.toString());
+		return result;
+	}
+	
+	private static void checkBudget(BenchmarkResult cost, double maxNanos, long maxBytes) {
+		if (maxNanos >= 0 && cost.getMeanNanosPerOp() > maxNanos) {
+			throw new AssertionFailedError(String.format("Mean time of %s %.3f ns/op exceeds budget %.3f ns/op", 
+					cost.getName(), cost.getMeanNanosPerOp(), maxNanos));
+		}
+		// fraction of byte comes from measurement itself
+		if (maxBytes >= 0 && !Double.isNaN(cost.getBytesPerOp()) && Math.round(cost.getBytesPerOp()) > maxBytes) {
+			throw new AssertionFailedError(String.format("%s allocates %.1f B/op, budget is %d B/op", 
+					cost.getName(), cost.getBytesPerOp(), maxBytes));
+		}
+	}
+	
+	/**
+	 * @return distribution of hash codes or null if fewer than two distinct instances were produced
+	 */
+	private HashDistribution analyzeHashes(Class<?> type) throws Exception {
+		Random random = new Random(SEED);
+		RandomFields fields = generator == null ? new RandomFields(type) : null;
+		if (fields != null && fields.isEmpty())
+			return null;
+		Set<T> objects = new HashSet<T>();
+		for (int attempt = 0; objects.size() < hashSamples && attempt < hashSamples * 10; attempt++) {
+			objects.add(generator != null ? generator.next(random) : fields.fill(factory.create(), random));
+		}
+		if (objects.size() < 2)
+			return null;
+		int[] hashes = new int[objects.size()];
+		int i = 0;
+		for (T object : objects) {
+			hashes[i++] = object.hashCode();
+		}
+		int[] changedBits = null;
+		if (fields != null && !fields.isEmpty()) {
+			int changes = 0;
+			changedBits = new int[hashSamples];
+			for (int attempt = 0; changes < hashSamples && attempt < hashSamples * 10; attempt++) {
+				long seed = random.nextLong();
+				T original = fields.fill(factory.create(), new Random(seed));
+				T changed = fields.fill(factory.create(), new Random(seed));
+				fields.mutate(changed, random);
+				if (!original.equals(changed)) { // field might not be part of equals
+					changedBits[changes++] = Integer.bitCount(original.hashCode() ^ changed.hashCode());
+				}
+			}
+			changedBits = Arrays.copyOf(changedBits, changes);
+		}
+		return new HashDistribution(hashes, changedBits);
+	}
+	
+	private Statement applyForClasses(final Statement base, final Description description) {
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				Statement nothing = new Statement() {
+					@Override
+					public void evaluate() {
+					}
+				};
+				StringBuilder failures = new StringBuilder();
+				int failed = 0;
+				for (Class<?> clazz : testClasses) {
+					try {
+						new FulfillEqualsContractRule<Object>(constructorFactory(clazz))
+								.checkHashDistribution(hashSamples).maxCollisionRate(maxCollisionRate)
+								.minBucketOccupancy(minBucketOccupancy).maxBucketLength(maxBucketLength)
+								.minAvalanche(minAvalanche).equalsBudget(maxEqualsNanos, maxEqualsBytes)
+								.hashCodeBudget(maxHashCodeNanos, maxHashCodeBytes)
+								.costMeasurement(costWarmupIterations, costIterations, costIterationMs).apply(nothing, description).evaluate();
+					} catch (Throwable t) {
+						failed++;
+						failures.append("\n").append(clazz.getName()).append(": ").append(t);
+					}
+				}
+				if (failed > 0) {
+					throw new AssertionFailedError("Equals contract of " + failed + " of " + testClasses.size() 
+							+ " classes is broken:" + failures);
+				}
+				base.evaluate();
+			}
+		};
+	}
 }
@@ -1,8 +1,14 @@
 package org.wowbagger.rules;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.rules.TestRule;
 import org.junit.runner.Description;
 import org.junit.runners.model.Statement;
+import org.wowbagger.rules.intern.BeanVerifier;
+import org.wowbagger.rules.intern.ClassIndex;
 import org.wowbagger.rules.intern.GetterSetterTester;
 
 /**
@@ -16,6 +22,11 @@ import org.wowbagger.rules.intern.GetterSetterTester;
 	&#064;ClassRule
 	public static GetterSetterRule&lt;TestedObject> tester = new GetterSetterRule&lt;TestedObject>(new TestedObject(), new String[]{"ignored"}, true);
  * </pre>
+ * All beans of a package can be tested by single rule:
+ * <pre>
+	&#064;ClassRule
+	public static GetterSetterRule&lt;Object> tester = GetterSetterRule.forPackage("com.acme.model");
+ * </pre>
  * 
  * @author setkomac
  *
@@ -24,6 +35,8 @@ public class GetterSetterRule<T> implements TestRule {
 	private T testClass;
 	private String[] ignores;
 	private boolean verbose;
+	/** Package with tested beans, null if single instance is tested. */
+	private String packageName;
 	
 	/**
 	 * Rule constructor 
@@ -37,6 +50,33 @@ public class GetterSetterRule<T> implements TestRule {
 		this.verbose = verbose;
 	}
 
+	private GetterSetterRule(String packageName, String[] ignores, boolean verbose) {
+		this.packageName = packageName;
+		this.ignores = ignores;
+		this.verbose = verbose;
+	}
+	
+	/**
+	 * Creates rule which tests all bean classes of the package. Classes are tested in parallel and all failures
+	 * are reported together.
+	 * @param packageName name of the package, subpackages are not included
+	 */
+	public static GetterSetterRule<Object> forPackage(String packageName) {
+		return forPackage(packageName, new String[0], false);
+	}
+	
+	/**
+	 * Creates rule which tests all bean classes of the package. Classes are tested in parallel and all failures
+	 * are reported together. Candidates are found in class files, other classes of the package are never loaded.
+	 * Package which can't be scanned or contains no beans fails the test with {@link IllegalArgumentException}.
+	 * @param packageName name of the package, subpackages are not included
+	 * @param ignores list of fields ignored in all classes
+	 * @param verbose output mode, true produces messages for each tested method
+	 */
+	public static GetterSetterRule<Object> forPackage(String packageName, String[] ignores, boolean verbose) {
+		return new GetterSetterRule<Object>(packageName, ignores, verbose);
+	}
+
 	@Override
 	public Statement apply(final Statement base, final Description description) {
 		return new Statement() {
@@ -52,7 +92,10 @@ public class GetterSetterRule<T> implements TestRule {
 			}
 
 			private void executeTests() throws Exception {
-				
+				if (packageName != null) {
+					executePackageTests();
+					return;
+				}
 				GetterSetterTester tester = new GetterSetterTester(testClass);
 				for (int i = 0; i < ignores.length; i++) {
 					tester.exclude(ignores[i]);
@@ -60,7 +103,34 @@ public class GetterSetterRule<T> implements TestRule {
 				tester.setVerbose(verbose);
 				tester.test();
 				
-			}			
+			}
+			
+			private void executePackageTests() throws Exception {
+				ClassIndex index = ClassIndex.scan(packageName);
+				List<Class<?>> beans = new ArrayList<Class<?>>();
+				for (Class<?> clazz : index.load(index.beanCandidates(), "bean candidates")) {
+					if (BeanVerifier.isBean(clazz)) {
+						beans.add(clazz);
+					}
+				}
+				if (beans.isEmpty()) {
+					throw new IllegalArgumentException("No beans found in package " + packageName);
+				}
+				Map<String, List<String>> failures = new BeanVerifier(ignores, verbose).verify(beans);
+				if (failures.isEmpty()) {
+					return;
+				}
+				StringBuilder report = new StringBuilder();
+				report.append("Getters and setters of ").append(failures.size()).append(" of ").append(beans.size())
+					.append(" classes in package ").append(packageName).append(" failed:");
+				for (Map.Entry<String, List<String>> entry : failures.entrySet()) {
+					report.append("\n").append(entry.getKey());
+					for (String failure : entry.getValue()) {
+						report.append("\n    ").append(failure);
+					}
+				}
+				throw new AssertionError(report.toString());
+			}
 		};
 	}
 	
@@ -1,7 +1,9 @@
 package org.wowbagger.rules;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -13,6 +15,7 @@ import org.junit.runner.Description;
 import org.junit.runners.model.Statement;
 import org.wowbagger.rules.annotation.Invariant;
 import org.wowbagger.rules.annotation.Invariants;
+import org.wowbagger.rules.intern.ClassIndex;
 
 /**
  * Rule for testing class's invariants. Based on OOD and DDD principles.
@@ -38,6 +41,7 @@ import org.wowbagger.rules.annotation.Invariants;
        ...
 	
  * </pre>
+ * Invariants of all annotated classes in a package can be verified by rule created with {@link #forPackage(String)}.
  *
  */
 public class InvariantRule implements TestRule {
@@ -46,12 +50,12 @@ public class InvariantRule implements TestRule {
 	
 	private Map<String, Integer> invariants = new HashMap<String, Integer>();	
 		
-	private Class<?> testObject;
+	private List<Class<?>> testObjects = new ArrayList<Class<?>>();
 	
 	public InvariantRule(Class<?> clazz)  {
 		
 		try {
-			testObject = (Class<?>) Class.forName(clazz.getCanonicalName());
+			testObjects.add((Class<?>) Class.forName(clazz.getCanonicalName()));
 		} catch (SecurityException e) {
 			LOGGER.severe(e.getMessage());
 		} catch (ClassNotFoundException e) {
@@ -59,14 +63,38 @@ public class InvariantRule implements TestRule {
 		}
 	}
 	
+	private InvariantRule(List<Class<?>> classes) {
+		testObjects.addAll(classes);
+	}
+	
+	/**
+	 * Creates rule which verifies invariants of all classes in the package annotated with {@link Invariants}.
+	 * Annotated classes are found in class files, other classes of the package are not loaded.
+	 * @param packageName name of the package, subpackages are not included
+	 * @throws IllegalArgumentException if the package can't be scanned or contains no annotated classes
+	 */
+	public static InvariantRule forPackage(String packageName) {
+		ClassIndex index = ClassIndex.scan(packageName);
+		return new InvariantRule(index.load(index.invariantClasses(), "classes annotated with @Invariants"));
+	}
+	
+	/**
+	 * @return classes with verified invariants
+	 */
+	List<Class<?>> getTestedClasses() {
+		return testObjects;
+	}
+	
 	public void before() {
 		//scan all invariants to initialize map
-		Invariants inv = (Invariants) testObject.getAnnotation(Invariants.class);
-		if(inv == null){
-			return;
-		}		
-		for (int i = 0; i < inv.names().length; i++) {
-			invariants.put(inv.names()[i], 0);
+		for (Class<?> testObject : testObjects) {
+			Invariants inv = (Invariants) testObject.getAnnotation(Invariants.class);
+			if(inv == null){
+				continue;
+			}		
+			for (int i = 0; i < inv.names().length; i++) {
+				invariants.put(inv.names()[i], 0);
+			}
 		}
 	}
 
@@ -1,25 +1,145 @@
 package org.wowbagger.rules;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 import org.junit.rules.TestRule;
 import org.junit.runner.Description;
 import org.junit.runners.model.Statement;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockSettings;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 
+/**
+ * Initializes Mockito annotated fields of the test before each test.
+ * 
+ * In reuse mode each &#064;Mock field of a test class gets its mock created once, following tests get the same 
+ * mock after {@link Mockito#reset(Object...)}, so mock classes and instances are not created again. Mocked 
+ * fields are found once per test class. Classes with &#064;Spy, &#064;Captor or &#064;InjectMocks fields are 
+ * initialized by {@link MockitoAnnotations#initMocks(Object)} even in reuse mode. Reused mocks are shared by 
+ * all instances of the test class, so tests of one class must not run concurrently.
+ * 
+ * Time of mock setup is logged on FINE level.
+ */
 public class MockRule implements TestRule {
+    
+    private static final Logger LOGGER = Logger.getLogger(MockRule.class.getName());
+    
+    /** Mocked fields and reused mocks of test classes. */
+    private static final ClassValue<MockFields> MOCK_FIELDS = new ClassValue<MockFields>() {
+        @Override
+        protected MockFields computeValue(Class<?> type) {
+            return new MockFields(type);
+        }
+    };
 	 
     private final Object target;
+    
+    /** If true, mocks are reset and reused instead of created for each test. */
+    private final boolean reuse;
+    
+    private volatile long lastSetupNanos = -1;
  
     public MockRule(Object target) {
+        this(target, false);
+    }
+    
+    /**
+     * @param reuse if true, mocks are created once per test class and reset before each test
+     */
+    public MockRule(Object target, boolean reuse) {
         this.target = target;
+        this.reuse = reuse;
+    }
+    
+    /**
+     * @return time of mock setup before last test in nanoseconds, -1 if no test run yet
+     */
+    public long getLastSetupNanos() {
+        return lastSetupNanos;
     }
  
-    public Statement apply(final Statement base, Description description) {
+    public Statement apply(final Statement base, final Description description) {
         return new Statement() {
             @Override
             public void evaluate() throws Throwable {
-                MockitoAnnotations.initMocks(target);
+                long begin = System.nanoTime();
+                MockFields mockFields = reuse ? MOCK_FIELDS.get(target.getClass()) : null;
+                if (mockFields == null || mockFields.initMocks) {
+                    MockitoAnnotations.initMocks(target);
+                } else {
+                    mockFields.inject(target);
+                }
+                lastSetupNanos = System.nanoTime() - begin;
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(String.format("Mocks of %s set up in %.3f ms", description.getDisplayName(), 
+                            lastSetupNanos / 1e6));
+                }
                 base.evaluate();
             }
         };
     }
-}
\ No newline at end of file
+    
+    /**
+     * &#064;Mock fields of a test class and mocks reused for them.
+     */
+    private static class MockFields {
+        
+        /** True if fields of the class need processing which reuse mode doesn't support. */
+        final boolean initMocks;
+        
+        private final List<Field> fields = new ArrayList<Field>();
+        
+        private Object[] mocks;
+        
+        MockFields(Class<?> type) {
+            boolean unsupported = false;
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(Spy.class) || field.isAnnotationPresent(Captor.class) 
+                            || field.isAnnotationPresent(InjectMocks.class)) {
+                        unsupported = true;
+                    } else if (field.isAnnotationPresent(Mock.class) && !Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            initMocks = unsupported;
+        }
+        
+        synchronized void inject(Object target) throws IllegalAccessException {
+            if (mocks == null) {
+                // mocks are kept only if all of them are created, failed creation is repeated by next test
+                Object[] created = new Object[fields.size()];
+                for (int i = 0; i < created.length; i++) {
+                    created[i] = createMock(fields.get(i));
+                }
+                mocks = created;
+            } else if (mocks.length > 0) {
+                Mockito.reset(mocks);
+            }
+            for (int i = 0; i < mocks.length; i++) {
+                fields.get(i).set(target, mocks[i]);
+            }
+        }
+        
+        private static Object createMock(Field field) {
+            Mock annotation = field.getAnnotation(Mock.class);
+            MockSettings settings = Mockito.withSettings().defaultAnswer(annotation.answer().get())
+                    .name(annotation.name().length() > 0 ? annotation.name() : field.getName());
+            if (annotation.extraInterfaces().length > 0) {
+                settings.extraInterfaces(annotation.extraInterfaces());
+            }
+            return Mockito.mock(field.getType(), settings);
+        }
+    }
+}
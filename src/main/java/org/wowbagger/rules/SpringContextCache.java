@@ -0,0 +1,333 @@
+package org.wowbagger.rules;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * JVM wide cache of Spring contexts used by {@link SpringContextRule}, so tests with the same configuration 
+ * pay startup of the context only once.
+ * 
+ * Contexts are keyed by list of configuration locations. Contexts are created and started outside of the lock
+ * of the cache, concurrent requests for the same locations wait for the same context, requests for other 
+ * locations aren't blocked. Least recently used context is closed when the cache
+ * holds more than {@link #setMaxSize(int) max size} contexts or when live heap (measured after last garbage 
+ * collection) exceeds {@link #setMaxHeapFraction(double) fraction} of maximal heap. Tests which change state of
+ * the context should {@link #markDirty(String[]) mark it dirty}, dirty context is closed and created again 
+ * by next test. All cached contexts are closed on JVM shutdown.
+ * 
+ * @see SpringContextRule
+ */
+public class SpringContextCache {
+
+	private static final Logger LOGGER = Logger.getLogger(SpringContextCache.class.getName());
+	
+	private static SpringContextCache shared;
+	
+	/** Suffix of keys of contexts with lazily initialized singletons. */
+	private static final String LAZY_INIT = "#lazyInit";
+	
+	/**
+	 * Creates context which isn't cached yet.
+	 */
+	interface ContextCreator {
+		ConfigurableApplicationContext create();
+	}
+	
+	/** Contexts in access order, least recently used first. Task is done when the context is started. */
+	private final LinkedHashMap<List<String>, FutureTask<ConfigurableApplicationContext>> contexts = 
+			new LinkedHashMap<List<String>, FutureTask<ConfigurableApplicationContext>>(16, 0.75f, true);
+	
+	private int maxSize = 8;
+	
+	private double maxHeapFraction = 0.8;
+	
+	private long hits;
+	
+	private long misses;
+	
+	private long evictions;
+	
+	SpringContextCache() {
+	}
+	
+	/**
+	 * Returns cache shared by all tests running in this JVM. Cached contexts are closed on JVM shutdown.
+	 */
+	public static synchronized SpringContextCache shared() {
+		if (shared == null) {
+			final SpringContextCache cache = new SpringContextCache();
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				public void run() {
+					cache.clear();
+				}
+			}, "SpringContextCache-Shutdown"));
+			shared = cache;
+		}
+		return shared;
+	}
+	
+	/**
+	 * @param maxSize maximal number of cached contexts, default is 8
+	 */
+	public void setMaxSize(int maxSize) {
+		List<FutureTask<ConfigurableApplicationContext>> evicted;
+		synchronized (this) {
+			this.maxSize = maxSize;
+			evicted = evict(null);
+		}
+		close(evicted);
+	}
+	
+	/**
+	 * @param maxHeapFraction part of maximal heap which can be used before least recently used contexts are closed, 
+	 * default is 0.8
+	 */
+	public synchronized void setMaxHeapFraction(double maxHeapFraction) {
+		this.maxHeapFraction = maxHeapFraction;
+	}
+	
+	/**
+	 * Returns cached context for given locations, new context is created and started on first request. 
+	 * @param locations class path locations of XML configuration
+	 */
+	public ConfigurableApplicationContext get(final String[] locations) {
+		return get(Arrays.asList(locations.clone()), new ContextCreator() {
+			public ConfigurableApplicationContext create() {
+				return new ClassPathXmlApplicationContext(locations);
+			}
+		});
+	}
+	
+	/**
+	 * Returns cached context for given key, new context is created by the creator and started on first request.
+	 * The context is created by the requesting thread outside of the lock, other requests for the key wait for it.
+	 * Failed creation isn't cached, next request tries again.
+	 */
+	ConfigurableApplicationContext get(List<String> key, final ContextCreator creator) {
+		FutureTask<ConfigurableApplicationContext> task;
+		boolean created = false;
+		synchronized (this) {
+			task = contexts.get(key);
+			if (task != null) {
+				hits++;
+			} else {
+				misses++;
+				task = new FutureTask<ConfigurableApplicationContext>(new Callable<ConfigurableApplicationContext>() {
+					public ConfigurableApplicationContext call() {
+						ConfigurableApplicationContext context = creator.create();
+						context.start();
+						return context;
+					}
+				});
+				contexts.put(key, task);
+				created = true;
+			}
+		}
+		if (created) {
+			task.run();
+		}
+		ConfigurableApplicationContext context;
+		try {
+			context = task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for context " + key, e);
+		} catch (ExecutionException e) {
+			synchronized (this) {
+				if (contexts.get(key) == task) {
+					contexts.remove(key);
+				}
+			}
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException("Can't create context " + key, cause);
+		}
+		if (created) {
+			List<FutureTask<ConfigurableApplicationContext>> evicted;
+			synchronized (this) {
+				evicted = evict(key);
+			}
+			close(evicted);
+		}
+		return context;
+	}
+	
+	/**
+	 * Closes and removes context cached for given locations, next request creates new one. Only context with all 
+	 * singletons created is closed, use {@link #markDirty(String[], boolean)} for context created by 
+	 * {@link SpringContextRule#lazyInit()}.
+	 */
+	public void markDirty(String[] locations) {
+		markDirty(locations, false);
+	}
+	
+	/**
+	 * Closes and removes context cached for given locations, next request creates new one.
+	 * @param lazyInit true for context created by {@link SpringContextRule#lazyInit()}
+	 */
+	public void markDirty(String[] locations, boolean lazyInit) {
+		markDirty(key(locations, lazyInit));
+	}
+	
+	void markDirty(List<String> key) {
+		FutureTask<ConfigurableApplicationContext> task;
+		synchronized (this) {
+			task = contexts.remove(key);
+		}
+		if (task != null) {
+			close(task);
+		}
+	}
+	
+	/**
+	 * Closes and removes given context if it is still cached for the key. Context which was already evicted or 
+	 * marked dirty by another test is closed, context recreated meanwhile is kept.
+	 */
+	void markDirty(List<String> key, ConfigurableApplicationContext context) {
+		synchronized (this) {
+			FutureTask<ConfigurableApplicationContext> task = contexts.get(key);
+			if (task == null || !task.isDone() || contextOf(task) != context)
+				return;
+			contexts.remove(key);
+		}
+		context.close();
+	}
+	
+	/**
+	 * Closes all cached contexts.
+	 */
+	public void clear() {
+		List<FutureTask<ConfigurableApplicationContext>> closed;
+		synchronized (this) {
+			closed = new ArrayList<FutureTask<ConfigurableApplicationContext>>(contexts.values());
+			contexts.clear();
+		}
+		close(closed);
+	}
+	
+	/**
+	 * Key of context for given locations.
+	 * @param lazyInit true for context with lazily initialized singletons
+	 */
+	static List<String> key(String[] locations, boolean lazyInit) {
+		List<String> key = new ArrayList<String>(Arrays.asList(locations));
+		if (lazyInit) {
+			key.add(LAZY_INIT);
+		}
+		return key;
+	}
+	
+	public synchronized int size() {
+		return contexts.size();
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return String.format("SpringContextCache: %d contexts, %d hits, %d misses, %d evictions", 
+				contexts.size(), hits, misses, evictions);
+	}
+	
+	/**
+	 * Removes least recently used contexts over limits, the newest context and contexts which are being created 
+	 * are kept.
+	 * @return removed contexts, they should be closed outside of the lock
+	 */
+	private List<FutureTask<ConfigurableApplicationContext>> evict(List<String> newest) {
+		List<FutureTask<ConfigurableApplicationContext>> evicted = new ArrayList<FutureTask<ConfigurableApplicationContext>>();
+		Iterator<Map.Entry<List<String>, FutureTask<ConfigurableApplicationContext>>> eldest = 
+				contexts.entrySet().iterator();
+		while (eldest.hasNext() && (contexts.size() > maxSize || contexts.size() > 1 && isHeapFull())) {
+			Map.Entry<List<String>, FutureTask<ConfigurableApplicationContext>> entry = eldest.next();
+			if (entry.getKey().equals(newest) || !entry.getValue().isDone())
+				continue;
+			eldest.remove();
+			evictions++;
+			LOGGER.info("Closing least recently used context " + entry.getKey());
+			evicted.add(entry.getValue());
+		}
+		return evicted;
+	}
+	
+	private static void close(List<FutureTask<ConfigurableApplicationContext>> tasks) {
+		for (FutureTask<ConfigurableApplicationContext> task : tasks) {
+			close(task);
+		}
+	}
+	
+	/**
+	 * Closes context when its creation finishes, failed creation has nothing to close.
+	 */
+	private static void close(FutureTask<ConfigurableApplicationContext> task) {
+		try {
+			task.get().close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// context wasn't created
+		}
+	}
+	
+	/**
+	 * Context of done task, null if its creation failed.
+	 */
+	private static ConfigurableApplicationContext contextOf(FutureTask<ConfigurableApplicationContext> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			return null;
+		}
+	}
+	
+	private boolean isHeapFull() {
+		long max = Runtime.getRuntime().maxMemory();
+		if (max == Long.MAX_VALUE)
+			return false;
+		long used = 0;
+		boolean measured = false;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				MemoryUsage usage = pool.getCollectionUsage();
+				if (usage != null) {
+					used += usage.getUsed();
+					measured = true;
+				}
+			}
+		}
+		if (!measured)
+			used = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+		return used > max * maxHeapFraction;
+	}
+}
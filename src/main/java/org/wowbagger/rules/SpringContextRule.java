@@ -1,46 +1,145 @@
 package org.wowbagger.rules;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
+import org.junit.Assert;
 import org.junit.rules.TestRule;
 import org.junit.runner.Description;
 import org.junit.runners.model.Statement;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
+/**
+ * Creates Spring context from XML configuration for each test and injects &#064;Autowired fields of the test.
+ * Fields of any visibility, inherited ones too, are injected by type, or by field name if the context doesn't 
+ * contain exactly one bean of the type. Injected fields are found once per test class.
+ * 
+ * With cache enabled the context is taken from JVM wide {@link SpringContextCache} and it isn't closed after the
+ * test, so tests with the same locations share one context. Test which changes state of the context should call
+ * {@link #markDirty()}, context is then closed after the test.
+ * 
+ * Startup of the context can be profiled by {@link BeanStartupProfiler}, slowest beans are logged and total time
+ * of refresh can be limited:
+ * <pre>
+ *	&#064;Rule
+ *	public SpringContextRule spring = new SpringContextRule(locations, this).profileStartup(10).startupBudget(2000);
+ * </pre>
+ * 
+ * Time to first test of large contexts can be cut by {@link #lazyInit()}, which creates only injected beans and 
+ * their dependencies.
+ */
 public class SpringContextRule implements TestRule {
+	
+    private static final Logger LOGGER = Logger.getLogger(SpringContextRule.class.getName());
 	 
     /** A list of class-path contexts. */
     private final String[] locations;
  
     /** The target test. */
     private final Object target;
+    
+    /** If true, contexts are shared by {@link SpringContextCache}. */
+    private final boolean cached;
+    
+    private volatile boolean dirty;
+    
+    /** Number of slowest beans in startup report, 0 if startup isn't reported. */
+    private int profiledBeans;
+    
+    /** Maximal time of context refresh in milliseconds, negative for no limit. */
+    private long startupBudgetMs = -1;
+    
+    /** If true, singletons are not created by refresh, only injected beans are created. */
+    private boolean lazyInit;
+    
+    /** Profiler of context created by current test, null if context was cached or not profiled. */
+    private volatile BeanStartupProfiler startupProfiler;
+    
+    /** Injected fields of test classes. */
+    private static final ClassValue<Injection> INJECTIONS = new ClassValue<Injection>() {
+        @Override
+        protected Injection computeValue(Class<?> type) {
+            return new Injection(type);
+        }
+    };
  
     public SpringContextRule(String[] locations, Object target) {
+        this(locations, target, false);
+    }
+    
+    /**
+     * @param cached if true, context is taken from {@link SpringContextCache#shared()}
+     */
+    public SpringContextRule(String[] locations, Object target, boolean cached) {
         this.locations = locations;
         this.target = target;
+        this.cached = cached;
+    }
+    
+    /**
+     * Marks cached context as changed by the test, it is closed after the test and next test gets new one.
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+    
+    /**
+     * Enables profiling of context startup, total refresh time and given number of slowest beans are logged.
+     */
+    public SpringContextRule profileStartup(int slowestBeans) {
+        profiledBeans = slowestBeans;
+        return this;
+    }
+    
+    /**
+     * Fails test if refresh of its context takes longer, cached contexts are checked only when they are created.
+     */
+    public SpringContextRule startupBudget(long maxMs) {
+        startupBudgetMs = maxMs;
+        return this;
+    }
+    
+    /**
+     * Singletons aren't created by refresh, only beans injected to the test and their dependencies are created. 
+     * Bean post processors are still created by refresh. Cached lazy contexts are not shared with other modes.
+     */
+    public SpringContextRule lazyInit() {
+        lazyInit = true;
+        return this;
+    }
+    
+    /**
+     * @return profiler of context created for the last test, null if the context was cached or not profiled
+     */
+    public BeanStartupProfiler getStartupProfiler() {
+        return startupProfiler;
     }
  
     public Statement apply(final Statement base, Description description) {
         return new Statement() {
             @Override
             public void evaluate() throws Throwable {
-                ConfigurableApplicationContext context = new ClassPathXmlApplicationContext(
-                        locations);
+                startupProfiler = null;
+                if (cached) {
+                    evaluateCached(base);
+                    return;
+                }
+                ConfigurableApplicationContext context = createContext();
 //                AutowireCapableBeanFactory beanFactory = context
 //                        .getAutowireCapableBeanFactory();
  
-                /* As this is an example of @Rule, this is a rough hand-rolled injector, 
-                 * not suitable for production.
-                 * More capable ones, that support @Inject, @Qualifier etc. probably exist. */
-                for (Field f : target.getClass().getFields()) {
-                    if (f.isAnnotationPresent(Autowired.class)) {
-                        f.set(target, context.getBean(f.getName(), f.getType()));
-                    }
-                }
-                context.start();
                 try {
+                    checkStartupBudget();
+                    inject(context);
+                    context.start();
                     base.evaluate();
                 } finally {
                     context.close();
@@ -48,4 +147,125 @@ public class SpringContextRule implements TestRule {
             }
         };
     }
-}
\ No newline at end of file
+    
+    private void evaluateCached(Statement base) throws Throwable {
+        SpringContextCache cache = SpringContextCache.shared();
+        dirty = false;
+        List<String> key = SpringContextCache.key(locations, lazyInit);
+        ConfigurableApplicationContext context = cache.get(key, new SpringContextCache.ContextCreator() {
+            public ConfigurableApplicationContext create() {
+                return createContext();
+            }
+        });
+        try {
+            checkStartupBudget();
+            inject(context);
+            base.evaluate();
+        } finally {
+            if (dirty) {
+                cache.markDirty(key, context);
+            }
+        }
+    }
+    
+    private ConfigurableApplicationContext createContext() {
+        ClassPathXmlApplicationContext context = new InitializationContext(locations, lazyInit);
+        if (profiledBeans <= 0 && startupBudgetMs < 0) {
+            context.refresh();
+            return context;
+        }
+        BeanStartupProfiler profiler = new BeanStartupProfiler();
+        profiler.refresh(context);
+        startupProfiler = profiler;
+        if (profiledBeans > 0) {
+            LOGGER.info(profiler.report(profiledBeans));
+        }
+        return context;
+    }
+    
+    private void checkStartupBudget() {
+        BeanStartupProfiler profiler = startupProfiler;
+        if (profiler != null && startupBudgetMs >= 0 
+                && profiler.getRefreshNanos() > TimeUnit.MILLISECONDS.toNanos(startupBudgetMs)) {
+            Assert.fail(String.format("Context startup took %.1f ms, budget is %d ms%n%s", profiler.getRefreshNanos() / 1e6, 
+                    startupBudgetMs, profiler.report(Math.max(profiledBeans, 10))));
+        }
+    }
+    
+    private void inject(ConfigurableApplicationContext context) throws IllegalAccessException {
+        /* As this is an example of @Rule, this is a rough hand-rolled injector, 
+         * not suitable for production.
+         * More capable ones, that support @Inject, @Qualifier etc. probably exist. */
+        Injection injection = INJECTIONS.get(target.getClass());
+        String[] beanNames = injection.beanNames(context);
+        for (int i = 0; i < injection.fields.length; i++) {
+            injection.fields[i].set(target, context.getBean(beanNames[i], injection.fields[i].getType()));
+        }
+    }
+    
+    /**
+     * Context which can skip creation of singletons by refresh.
+     */
+    private static class InitializationContext extends ClassPathXmlApplicationContext {
+        
+        private final boolean lazyInit;
+        
+        InitializationContext(String[] locations, boolean lazyInit) {
+            super(locations, false);
+            this.lazyInit = lazyInit;
+        }
+        
+        @Override
+        protected void finishBeanFactoryInitialization(ConfigurableListableBeanFactory beanFactory) {
+            if (!lazyInit) {
+                super.finishBeanFactoryInitialization(beanFactory);
+                return;
+            }
+            beanFactory.setTempClassLoader(null);
+            beanFactory.freezeConfiguration();
+        }
+    }
+    
+    /**
+     * &#064;Autowired fields of a test class including non-public and inherited ones, with names of beans 
+     * resolved for the last used context.
+     */
+    private static class Injection {
+        
+        final Field[] fields;
+        
+        private WeakReference<ConfigurableApplicationContext> resolvedContext;
+        
+        private String[] beanNames;
+        
+        Injection(Class<?> type) {
+            List<Field> injected = new ArrayList<Field>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    if (f.isAnnotationPresent(Autowired.class) && !Modifier.isStatic(f.getModifiers())) {
+                        f.setAccessible(true);
+                        injected.add(f);
+                    }
+                }
+            }
+            fields = injected.toArray(new Field[injected.size()]);
+        }
+        
+        /**
+         * Resolves beans by type, by field name if there isn't exactly one bean of the type.
+         */
+        synchronized String[] beanNames(ConfigurableApplicationContext context) {
+            if (resolvedContext != null && resolvedContext.get() == context) {
+                return beanNames;
+            }
+            String[] names = new String[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                String[] candidates = context.getBeanNamesForType(fields[i].getType(), true, false);
+                names[i] = candidates.length == 1 ? candidates[0] : fields[i].getName();
+            }
+            resolvedContext = new WeakReference<ConfigurableApplicationContext>(context);
+            beanNames = names;
+            return names;
+        }
+    }
+}
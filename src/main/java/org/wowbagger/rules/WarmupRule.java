@@ -0,0 +1,71 @@
+package org.wowbagger.rules;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.wowbagger.rules.annotation.Warmup;
+
+/**
+ * Rule runs test annotated with {@link Warmup} repeatedly without measurement, so JIT compiler can optimize 
+ * tested code before the real run. Time of the final run is logged.
+ * 
+ * Sample usage:
+ * <pre>
+	&#064;Rule
+	public WarmupRule warmup = new WarmupRule();
+	
+	&#064;Warmup(iterations = 10000, durationMs = 500)
+	&#064;Test
+	public void test() {
+	   ...
+	}
+ * </pre>
+ * 
+ * @see ConcurrentRule
+ */
+public class WarmupRule implements TestRule {
+
+	private static final Logger LOGGER = Logger.getLogger(WarmupRule.class.getName());
+	
+	@Override
+	public Statement apply(final Statement base, final Description description) {
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				Warmup warmup = description.getAnnotation(Warmup.class);
+				if (warmup == null) {
+					base.evaluate();
+					return;
+				}
+				long invocations = warmUp(warmup, base);
+				long begin = System.nanoTime();
+				base.evaluate();
+				LOGGER.info(description.getDisplayName() + ": run took " 
+						+ TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - begin) + " us after " 
+						+ invocations + " warmup invocations");
+			}
+		};
+	}
+	
+	/**
+	 * Evaluates statement until warmup budget is spent.
+	 * @param warmup warmup definition, null means no warmup
+	 * @param statement warmed up statement
+	 * @return number of warmup invocations
+	 */
+	static long warmUp(Warmup warmup, Statement statement) throws Throwable {
+		if (warmup == null)
+			return 0;
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmup.durationMs());
+		long invocations = 0;
+		while (invocations < warmup.iterations() 
+				|| (warmup.durationMs() > 0 && System.nanoTime() - deadline < 0)) {
+			statement.evaluate();
+			invocations++;
+		}
+		return invocations;
+	}
+}
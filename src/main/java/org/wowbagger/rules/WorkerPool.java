@@ -0,0 +1,196 @@
+package org.wowbagger.rules;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Reusable pool of worker threads for {@link ConcurrentRule}.
+ * 
+ * Pool grows to the highest number of simultaneously submitted tasks and keeps idle threads alive, so consecutive 
+ * &#064;Concurrent tests reuse the same workers instead of creating new threads. The pool has always at least as 
+ * many threads as submitted unfinished tasks, so all invocations of one test run at the same time, which is 
+ * required by the start gate of the rule.
+ * 
+ * Pool can be bound to a test class (used as ClassRule, threads are stopped after the last test) or 
+ * shared by whole JVM (stopped by shutdown hook).
+ * 
+ * Sample usage:
+ * <pre>
+	&#064;ClassRule
+	public static WorkerPool pool = new WorkerPool();
+	
+	&#064;Rule
+	public ConcurrentRule rule = new ConcurrentRule(pool);
+	
+	// or JVM wide pool
+	&#064;Rule
+	public ConcurrentRule rule = new ConcurrentRule(WorkerPool.shared());
+ * </pre>
+ * 
+ * @see ConcurrentRule
+ */
+public class WorkerPool extends InitializationRule {
+
+	private static final Logger LOGGER = Logger.getLogger(WorkerPool.class.getName());
+	
+	/** How long idle worker waits for next test before it is stopped. */
+	private static final long KEEP_ALIVE_SECONDS = 60;
+	
+	private static WorkerPool shared;
+	
+	private final String name;
+	
+	/** If true, pool lives until JVM shutdown and ignores ClassRule lifecycle. */
+	private final boolean jvmWide;
+	
+	private ThreadPoolExecutor executor;
+	
+	/** Submitted tasks which are not finished yet. */
+	private final AtomicInteger busy = new AtomicInteger();
+	
+	/**
+	 * Creates pool which should be used as ClassRule.
+	 */
+	public WorkerPool() {
+		this("ConcurrentRule-Worker", false);
+	}
+	
+	/**
+	 * Creates pool which should be used as ClassRule.
+	 * @param name prefix of worker thread names
+	 */
+	public WorkerPool(String name) {
+		this(name, false);
+	}
+	
+	private WorkerPool(String name, boolean jvmWide) {
+		this.name = name;
+		this.jvmWide = jvmWide;
+	}
+	
+	/**
+	 * Returns pool shared by all tests running in this JVM. Pool is stopped on JVM shutdown.
+	 */
+	public static synchronized WorkerPool shared() {
+		if (shared == null) {
+			final WorkerPool pool = new WorkerPool("ConcurrentRule-Shared", true);
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				public void run() {
+					pool.shutdown();
+				}
+			}, "ConcurrentRule-Shared-Shutdown"));
+			shared = pool;
+		}
+		return shared;
+	}
+	
+	@Override
+	public void before() {
+		start();
+	}
+
+	@Override
+	public void after() {
+		if (!jvmWide) {
+			shutdown();
+		}
+	}
+	
+	/**
+	 * Runs task on pooled thread. For the time of execution worker thread is renamed to given name.
+	 * Pool is started if needed.
+	 * @param task task to execute
+	 * @param threadName name of the worker thread during execution
+	 * @return future completed when the worker thread is released
+	 */
+	public Future<?> execute(final Runnable task, final String threadName) {
+		ThreadPoolExecutor started = start();
+		int demand = busy.incrementAndGet();
+		synchronized (this) {
+			// idle thread is reused only if there are more threads than unfinished tasks
+			if (demand > started.getCorePoolSize())
+				started.setCorePoolSize(demand);
+		}
+		try {
+			return started.submit(new Runnable() {
+				public void run() {
+					Thread current = Thread.currentThread();
+					String poolName = current.getName();
+					current.setName(threadName);
+					try {
+						task.run();
+					} finally {
+						current.setName(poolName);
+						busy.decrementAndGet();
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			busy.decrementAndGet();
+			throw e;
+		}
+	}
+	
+	/**
+	 * @return number of threads currently in the pool
+	 */
+	public synchronized int getPoolSize() {
+		return executor == null ? 0 : executor.getPoolSize();
+	}
+	
+	/**
+	 * Stops all pooled threads. Pool can be started again by next execution.
+	 */
+	public void shutdown() {
+		ThreadPoolExecutor stopped;
+		synchronized (this) {
+			stopped = executor;
+			executor = null;
+		}
+		if (stopped == null) {
+			return;
+		}
+		stopped.shutdown();
+		try {
+			if (!stopped.awaitTermination(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS)) {
+				LOGGER.warning(name + ": workers still running after shutdown, interrupting");
+				stopped.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			stopped.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private synchronized ThreadPoolExecutor start() {
+		if (executor == null) {
+			executor = new ThreadPoolExecutor(1, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, 
+					new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory(name));
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+	
+	/**
+	 * Creates named daemon threads, pool should never keep JVM alive.
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+		private final AtomicInteger counter = new AtomicInteger();
+		private final String name;
+		
+		WorkerThreadFactory(String name) {
+			this.name = name;
+		}
+		
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
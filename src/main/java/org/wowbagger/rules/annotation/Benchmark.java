@@ -0,0 +1,31 @@
+package org.wowbagger.rules.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks test executed as microbenchmark by {@link org.wowbagger.rules.BenchmarkRule}.
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface Benchmark {
+	/** Number of in-process forks, each fork repeats warmup and measurement. */
+	int forks() default 1;
+	
+	/** Number of warmup iterations in each fork. */
+	int warmupIterations() default 5;
+	
+	/** Number of measured iterations in each fork. */
+	int measurementIterations() default 10;
+	
+	/** Duration of single iteration in milliseconds. */
+	long iterationMs() default 100;
+	
+	/** Maximal mean time of single operation in nanoseconds, negative value (default) means no limit. */
+	double maxNanosPerOp() default -1;
+}
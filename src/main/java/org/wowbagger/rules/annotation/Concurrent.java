@@ -5,8 +5,53 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Annotation for tests which should be executed by {@link org.wowbagger.rules.ConcurrentRule}.
+ *
+ */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.METHOD})
 public @interface Concurrent {
+    /** Number of concurrent invocations, 0 means number of available processors. */
     int value() default 10;
+    
+    /**
+     * Runs invocations on virtual threads (Java 21+). On older JVM platform threads are used instead, 
+     * up to 256 threads, tests with more threads fail there.
+     */
+    boolean virtual() default false;
+    
+    /**
+     * Number of invocations done by each thread. Default (0) means single invocation, or unlimited 
+     * invocations when {@link #durationMs()} is given.
+     */
+    int iterations() default 0;
+    
+    /**
+     * Time in milliseconds for which each thread repeats invocations. Default (0) means no time limit.
+     */
+    long durationMs() default 0;
+    
+    /**
+     * Repeats test with 1, 2, 4 ... threads up to {@link #value()} and reports throughput of each run.
+     * Meaningful results require {@link #iterations()} or {@link #durationMs()}.
+     */
+    boolean scalability() default false;
+    
+    /**
+     * Stops remaining invocations and interrupts other threads after the first failure.
+     */
+    boolean failFast() default false;
+    
+    /**
+     * Maximal time in milliseconds of the whole run, default (0) means no limit. Deadlocks are detected regardless 
+     * of the timeout.
+     */
+    long timeoutMs() default 0;
+    
+    /**
+     * Threads wait for start busy spinning instead of parking, so they start at nearly the same moment.
+     * It burns CPU while threads are being started.
+     */
+    boolean spinStart() default false;
 }
@@ -0,0 +1,21 @@
+package org.wowbagger.rules.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks immutable value type. {@link org.wowbagger.rules.FulfillEqualsContractRule} checks whether repeated 
+ * hashCode of the same instance gets slower with size of its String, collection and array fields, which means 
+ * the hash is recomputed instead of cached.
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface Immutable {
+	/** If true, recomputed hash fails the test, otherwise only warning is logged. */
+	boolean cachedHashCode() default false;
+}
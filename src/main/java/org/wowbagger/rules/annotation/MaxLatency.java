@@ -0,0 +1,25 @@
+package org.wowbagger.rules.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits of invocation latency for tests annotated with {@link Concurrent}.
+ * Negative value (default) means that given percentile is not checked.
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface MaxLatency {
+	long p50() default -1;
+	long p90() default -1;
+	long p99() default -1;
+	long p999() default -1;
+	long max() default -1;
+	TimeUnit unit() default TimeUnit.MILLISECONDS;
+}
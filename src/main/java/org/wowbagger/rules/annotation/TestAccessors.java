@@ -0,0 +1,31 @@
+package org.wowbagger.rules.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lists beans for which {@link org.wowbagger.rules.annotation.processing.TestAccessorsProcessor} generates 
+ * tests of getters and setters. Generated test class [BeanName]AccessorsTest in package of the bean calls 
+ * accessors directly, without reflection and proxies.
+ * 
+ * Annotation is used on a class compiled with tests, so beans don't depend on tests and their classes can come
+ * from another module:
+ * <pre>
+    &#064;TestAccessors({Person.class, Address.class})
+    class Accessors {
+    }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.TYPE})
+public @interface TestAccessors {
+	/** Tested beans. */
+	Class<?>[] value();
+	
+	/** Names of ignored fields, of all listed beans. */
+	String[] ignores() default {};
+}
@@ -0,0 +1,24 @@
+package org.wowbagger.rules.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Warmup of the test body before measurement, honored by {@link org.wowbagger.rules.WarmupRule} and
+ * {@link org.wowbagger.rules.ConcurrentRule}. Warmup lasts until both given iterations are done and 
+ * given time elapsed.
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface Warmup {
+	/** Minimal number of warmup invocations. */
+	int iterations() default 0;
+	
+	/** Minimal time of warmup in milliseconds. */
+	long durationMs() default 0;
+}
@@ -0,0 +1,303 @@
+package org.wowbagger.rules.annotation.processing;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.MirroredTypesException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import org.wowbagger.rules.annotation.TestAccessors;
+
+/**
+ * Annotation processor generating JUnit tests of getters and setters for beans listed by {@link TestAccessors}.
+ * 
+ * For every setter with matching getter (is[FieldName] for boolean values) generated test sets a sample value and
+ * checks that getter returns it, like {@link org.wowbagger.rules.intern.GetterSetterTester} does, but with direct 
+ * calls. Overloaded setters share one test of their property, the first setter matching the getter is tested. Primitives, their wrappers, String, BigDecimal, BigInteger, enums and arrays get sample values, other 
+ * classes are created by public no argument constructor. Properties of other types would need proxies, they are 
+ * skipped with a warning. Missing getters and constructors are reported as compilation errors.
+ * 
+ * Processor is registered as service, so it runs whenever this library is on the classpath of compilation which 
+ * includes JUnit - usually compilation of tests.
+ */
+@SupportedAnnotationTypes("org.wowbagger.rules.annotation.TestAccessors")
+public class TestAccessorsProcessor extends AbstractProcessor {
+
+	private static final String SUFFIX = "AccessorsTest";
+	
+	/** Names of beans with generated test, every test can be created once. */
+	private final Set<String> generated = new HashSet<String>();
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element marker : roundEnv.getElementsAnnotatedWith(TestAccessors.class)) {
+			TestAccessors accessors = marker.getAnnotation(TestAccessors.class);
+			Set<String> ignores = new HashSet<String>();
+			for (String ignore : accessors.ignores()) {
+				ignores.add(ignore.toLowerCase());
+			}
+			for (TypeMirror beanType : beanTypes(accessors)) {
+				Element element = processingEnv.getTypeUtils().asElement(beanType);
+				if (element == null || element.getKind() != ElementKind.CLASS) {
+					error(marker, "@TestAccessors bean " + beanType + " is not a class");
+					continue;
+				}
+				TypeElement bean = (TypeElement) element;
+				if (!generated.add(bean.getQualifiedName().toString())) {
+					error(marker, "Accessors test of " + bean.getQualifiedName() + " is already generated");
+					continue;
+				}
+				try {
+					generate(marker, bean, ignores);
+				} catch (IOException e) {
+					error(marker, "Can't generate accessors test of " + bean.getQualifiedName() + ": " + e.getMessage());
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Types of beans listed by annotation. Classes of beans can't be loaded during compilation, 
+	 * so their types are taken from exception thrown by {@link TestAccessors#value()}.
+	 */
+	private static List<? extends TypeMirror> beanTypes(TestAccessors accessors) {
+		try {
+			accessors.value();
+			throw new IllegalStateException("Types of @TestAccessors beans are available at compile time");
+		} catch (MirroredTypesException e) {
+			return e.getTypeMirrors();
+		}
+	}
+	
+	private void generate(Element marker, TypeElement bean, Set<String> ignores) throws IOException {
+		String beanName = bean.getQualifiedName().toString();
+		if (bean.getModifiers().contains(Modifier.ABSTRACT) || !hasNoArgConstructor(bean)
+				|| (bean.getNestingKind() == NestingKind.MEMBER && !bean.getModifiers().contains(Modifier.STATIC))) {
+			error(marker, "@TestAccessors bean " + beanName 
+					+ " must be concrete, static if nested and have public no argument constructor");
+			return;
+		}
+		List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(bean));
+		Map<String, List<ExecutableElement>> setters = new LinkedHashMap<String, List<ExecutableElement>>();
+		for (ExecutableElement setter : methods) {
+			String name = setter.getSimpleName().toString();
+			if (!name.startsWith("set") || setter.getParameters().size() != 1 || !isPublicInstance(setter))
+				continue;
+			String fieldName = name.substring(3);
+			if (ignores.contains(fieldName.toLowerCase()))
+				continue;
+			if (!setters.containsKey(fieldName))
+				setters.put(fieldName, new ArrayList<ExecutableElement>());
+			setters.get(fieldName).add(setter);
+		}
+		List<ExecutableElement[]> properties = new ArrayList<ExecutableElement[]>();
+		for (Map.Entry<String, List<ExecutableElement>> entry : setters.entrySet()) {
+			ExecutableElement[] property = findProperty(marker, beanName, methods, entry.getKey(), entry.getValue());
+			if (property != null)
+				properties.add(property);
+		}
+		write(marker, bean, properties);
+	}
+	
+	/**
+	 * Getter and setter of tested property. Test is named by property, so only the first of overloaded setters 
+	 * matching the getter is tested, other overloads are ignored. Error is reported only if no setter matches.
+	 * @return getter and setter or null if property is not tested
+	 */
+	private ExecutableElement[] findProperty(Element marker, String beanName, List<ExecutableElement> methods, 
+			String fieldName, List<ExecutableElement> setters) {
+		String error = null;
+		for (ExecutableElement setter : setters) {
+			TypeMirror type = setter.getParameters().get(0).asType();
+			String prefix = type.getKind() == TypeKind.BOOLEAN || "java.lang.Boolean".equals(type.toString()) ? "is" : "get";
+			ExecutableElement getter = findGetter(methods, prefix + fieldName);
+			if (getter == null) {
+				if (error == null)
+					error = "Getter " + beanName + "." + prefix + fieldName + "() not found";
+				continue;
+			}
+			if (!processingEnv.getTypeUtils().isSameType(getter.getReturnType(), type)) {
+				if (error == null)
+					error = "Incompatible type for " + beanName + "." + prefix + fieldName + "() and " + setter.getSimpleName() + "()";
+				continue;
+			}
+			if (sampleValue(processingEnv.getTypeUtils().erasure(type)) == null) {
+				warning(marker, "Property " + beanName + "." + fieldName + " of type " + type 
+						+ " skipped, sample value needs public no argument constructor");
+				return null;
+			}
+			return new ExecutableElement[] { getter, setter };
+		}
+		error(marker, error);
+		return null;
+	}
+	
+	private void write(Element marker, TypeElement bean, List<ExecutableElement[]> properties) throws IOException {
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(bean);
+		String beanName = bean.getQualifiedName().toString();
+		String simpleName = pkg.isUnnamed() ? beanName : beanName.substring(pkg.getQualifiedName().length() + 1);
+		String testName = simpleName.replace('.', '_') + SUFFIX;
+		String qualifiedTestName = pkg.isUnnamed() ? testName : pkg.getQualifiedName() + "." + testName;
+		JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedTestName, marker, bean);
+		PrintWriter out = new PrintWriter(file.openWriter());
+		try {
+			if (!pkg.isUnnamed())
+				out.println("package " + pkg.getQualifiedName() + ";");
+			out.println();
+			out.println("/**");
+			out.println(" * Test of getters and setters of {@link " + beanName + "}.");
+			out.println(" * Generated by " + getClass().getName() + ", do not edit.");
+			out.println(" */");
+			out.println("@SuppressWarnings({\"rawtypes\", \"unchecked\"})");
+			out.println("public class " + testName + " {");
+			for (ExecutableElement[] property : properties) {
+				writeTest(out, beanName, property[0], property[1]);
+			}
+			out.println("}");
+		} finally {
+			out.close();
+		}
+	}
+	
+	private void writeTest(PrintWriter out, String beanName, ExecutableElement getter, ExecutableElement setter) {
+		TypeMirror type = processingEnv.getTypeUtils().erasure(setter.getParameters().get(0).asType());
+		String setterName = setter.getSimpleName().toString();
+		String getterName = getter.getSimpleName().toString();
+		out.println();
+		out.println("\t@org.junit.Test");
+		out.println("\tpublic void test" + setterName.substring(3) + "() {");
+		out.println("\t\t" + beanName + " bean = new " + beanName + "();");
+		out.println("\t\t" + type + " value = " + sampleValue(type) + ";");
+		out.println("\t\tbean." + setterName + "(value);");
+		if (type.getKind().isPrimitive())
+			out.println("\t\tif (bean." + getterName + "() != value)");
+		else
+			out.println("\t\tif (bean." + getterName + "() != value && (value == null || !value.equals(bean." + getterName + "())))");
+		out.println("\t\t\tthrow new AssertionError(\"Getter " + getterName + " did not return value from setter\");");
+		out.println("\t}");
+	}
+	
+	/**
+	 * Java expression of sample value, same values as GetterSetterTester uses.
+	 * @return expression or null if type has no sample value
+	 */
+	private String sampleValue(TypeMirror type) {
+		switch (type.getKind()) {
+		case INT:
+			return "22";
+		case LONG:
+			return "340000L";
+		case DOUBLE:
+			return "134.1";
+		case FLOAT:
+			return "0f";
+		case CHAR:
+			return "'x'";
+		case BOOLEAN:
+			return "true";
+		case BYTE:
+			return "(byte) 7";
+		case SHORT:
+			return "(short) 7";
+		case ARRAY:
+			String component = type.toString().substring(0, type.toString().indexOf('['));
+			return "new " + component + "[0]" + type.toString().substring(type.toString().indexOf('[') + 2);
+		default:
+			break;
+		}
+		String name = type.toString();
+		if ("java.lang.String".equals(name))
+			return "\"\"";
+		if ("java.lang.Integer".equals(name))
+			return "Integer.valueOf(22)";
+		if ("java.lang.Long".equals(name))
+			return "Long.valueOf(340000)";
+		if ("java.lang.Double".equals(name))
+			return "Double.valueOf(134.1)";
+		if ("java.lang.Float".equals(name))
+			return "Float.valueOf(0)";
+		if ("java.lang.Character".equals(name))
+			return "Character.valueOf('x')";
+		if ("java.lang.Boolean".equals(name))
+			return "Boolean.TRUE";
+		if ("java.lang.Byte".equals(name))
+			return "Byte.valueOf((byte) 7)";
+		if ("java.lang.Short".equals(name))
+			return "Short.valueOf((short) 7)";
+		if ("java.math.BigDecimal".equals(name))
+			return "java.math.BigDecimal.ONE";
+		if ("java.math.BigInteger".equals(name))
+			return "java.math.BigInteger.TEN";
+		Element element = processingEnv.getTypeUtils().asElement(type);
+		if (element != null && element.getKind() == ElementKind.ENUM) {
+			for (Element constant : element.getEnclosedElements()) {
+				if (constant.getKind() == ElementKind.ENUM_CONSTANT)
+					return name + "." + constant.getSimpleName();
+			}
+		}
+		if (element != null && element.getKind() == ElementKind.CLASS) {
+			TypeElement typeElement = (TypeElement) element;
+			if (typeElement.getModifiers().contains(Modifier.PUBLIC) && hasNoArgConstructor(typeElement)
+					&& !typeElement.getModifiers().contains(Modifier.ABSTRACT)
+					&& (typeElement.getNestingKind() == NestingKind.TOP_LEVEL 
+						|| typeElement.getModifiers().contains(Modifier.STATIC)))
+				return "new " + name + "()";
+		}
+		return null;
+	}
+	
+	private static ExecutableElement findGetter(List<ExecutableElement> methods, String name) {
+		for (ExecutableElement method : methods) {
+			if (method.getSimpleName().contentEquals(name) && method.getParameters().isEmpty() && isPublicInstance(method))
+				return method;
+		}
+		return null;
+	}
+	
+	private static boolean isPublicInstance(ExecutableElement method) {
+		return method.getModifiers().contains(Modifier.PUBLIC) && !method.getModifiers().contains(Modifier.STATIC);
+	}
+	
+	private static boolean hasNoArgConstructor(TypeElement bean) {
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(bean.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+				return true;
+		}
+		return false;
+	}
+	
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+	
+	private void warning(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+	}
+}
@@ -0,0 +1,128 @@
+package org.wowbagger.rules.intern;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Verifies getters and setters of many bean classes in parallel. Classes are independent, so they are split 
+ * between workers of a fork/join pool.
+ */
+public class BeanVerifier {
+	
+	/** Number of classes verified by single task without further splitting. */
+	private static final int THRESHOLD = 8;
+	
+	private final String[] ignores;
+	
+	private final boolean verbose;
+	
+	/**
+	 * @param ignores names of ignored fields
+	 * @param verbose output mode, true produces messages for each tested method
+	 */
+	public BeanVerifier(String[] ignores, boolean verbose) {
+		this.ignores = ignores;
+		this.verbose = verbose;
+	}
+	
+	/**
+	 * Checks if class looks like bean: concrete, static if nested, with no argument constructor and setters.
+	 * Class whose methods can't be inspected, e.g. because of missing classes, is a bean, so its error is 
+	 * reported by {@link #verify(List)}.
+	 */
+	public static boolean isBean(Class<?> clazz) {
+		int modifiers = clazz.getModifiers();
+		if (clazz.isInterface() || clazz.isEnum() || clazz.isAnnotation() || Modifier.isAbstract(modifiers))
+			return false;
+		try {
+			if (clazz.getEnclosingClass() != null && !Modifier.isStatic(modifiers))
+				return false;
+			if (clazz.isAnonymousClass() || clazz.isLocalClass())
+				return false;
+			clazz.getDeclaredConstructor();
+			return GetterSetterTester.hasProperties(clazz);
+		} catch (NoSuchMethodException e) {
+			return false;
+		} catch (LinkageError e) {
+			return true;
+		}
+	}
+	
+	/**
+	 * Verifies all classes on fork/join pool using all available processors.
+	 * @param classes verified classes
+	 * @return failures of classes sorted by class name, classes without failures are omitted
+	 */
+	public Map<String, List<String>> verify(List<Class<?>> classes) {
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			return pool.invoke(new VerifyTask(classes));
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	private List<String> verify(Class<?> clazz) {
+		Object bean;
+		try {
+			Constructor<?> constructor = clazz.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			bean = constructor.newInstance();
+		} catch (Exception e) {
+			return Collections.singletonList("can't create instance: " + e);
+		} catch (LinkageError e) {
+			return Collections.singletonList("can't create instance: " + e);
+		}
+		// errors of one class, e.g. missing classes of its properties, must not stop verification of others
+		try {
+			GetterSetterTester tester = new GetterSetterTester(bean);
+			for (int i = 0; i < ignores.length; i++) {
+				tester.exclude(ignores[i]);
+			}
+			tester.setVerbose(verbose);
+			return tester.verify();
+		} catch (RuntimeException e) {
+			return Collections.singletonList("verification failed: " + e);
+		} catch (LinkageError e) {
+			return Collections.singletonList("verification failed: " + e);
+		}
+	}
+	
+	private class VerifyTask extends RecursiveTask<Map<String, List<String>>> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final List<Class<?>> classes;
+		
+		VerifyTask(List<Class<?>> classes) {
+			this.classes = classes;
+		}
+		
+		@Override
+		protected Map<String, List<String>> compute() {
+			Map<String, List<String>> failures = new TreeMap<String, List<String>>();
+			if (classes.size() <= THRESHOLD) {
+				for (Class<?> clazz : classes) {
+					List<String> classFailures = verify(clazz);
+					if (!classFailures.isEmpty())
+						failures.put(clazz.getName(), classFailures);
+				}
+				return failures;
+			}
+			int middle = classes.size() / 2;
+			VerifyTask left = new VerifyTask(new ArrayList<Class<?>>(classes.subList(0, middle)));
+			VerifyTask right = new VerifyTask(new ArrayList<Class<?>>(classes.subList(middle, classes.size())));
+			left.fork();
+			failures.putAll(right.compute());
+			failures.putAll(left.join());
+			return failures;
+		}
+	}
+}
@@ -0,0 +1,499 @@
+package org.wowbagger.rules.intern;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Index of classes in a package built from class files, without loading the classes.
+ * 
+ * Class files are read from directories (memory mapped) and jar files available to class loader. Only the constant 
+ * pool, method signatures and class annotations are parsed, which is enough to find candidates for tests: beans, 
+ * classes with invariants and classes overriding equals. Only candidates have to be loaded afterwards, so static 
+ * initializers of other classes are never run. Subpackages are not scanned.
+ * 
+ * Package which isn't found or contains no classes is reported by {@link IllegalArgumentException}, so rules 
+ * scanning mistyped package don't pass without checking anything.
+ */
+public final class ClassIndex {
+
+	private static final String CLASS_SUFFIX = ".class";
+	
+	private static final int MAGIC = 0xCAFEBABE;
+	
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_STATIC = 0x0008;
+	private static final int ACC_INTERFACE = 0x0200;
+	private static final int ACC_ABSTRACT = 0x0400;
+	private static final int ACC_ANNOTATION = 0x2000;
+	private static final int ACC_ENUM = 0x4000;
+	
+	private static final String INVARIANTS = "Lorg/wowbagger/rules/annotation/Invariants;";
+	
+	private final ClassLoader loader;
+	
+	private final String packageName;
+	
+	private final Map<String, Entry> entries;
+	
+	private ClassIndex(ClassLoader loader, String packageName, Map<String, Entry> entries) {
+		this.loader = loader;
+		this.packageName = packageName;
+		this.entries = entries;
+	}
+	
+	/**
+	 * Indexes classes of a package visible to context class loader of current thread, or to class loader of this 
+	 * library if the thread has no context class loader.
+	 * @param packageName name of the package, e.g. com.acme.model
+	 * @return index of classes
+	 * @throws IllegalArgumentException if the package can't be scanned, isn't found or contains no classes
+	 */
+	public static ClassIndex scan(String packageName) {
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		if (loader == null) {
+			loader = ClassIndex.class.getClassLoader();
+		}
+		try {
+			return scan(loader, packageName);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Can't scan package " + packageName, e);
+		}
+	}
+	
+	/**
+	 * Indexes classes of a package.
+	 * @param loader class loader used to find package resources
+	 * @param packageName name of the package, e.g. com.acme.model
+	 * @return index of classes
+	 * @throws IOException if class files can't be read or are malformed
+	 * @throws IllegalArgumentException if the package isn't found or contains no classes in directories and jars
+	 */
+	public static ClassIndex scan(ClassLoader loader, String packageName) throws IOException {
+		String path = packageName.replace('.', '/');
+		Map<String, Entry> entries = new TreeMap<String, Entry>();
+		Enumeration<URL> resources = loader.getResources(path);
+		if (!resources.hasMoreElements())
+			throw new IllegalArgumentException("Package " + packageName + " not found by " + loader);
+		while (resources.hasMoreElements()) {
+			URL url = resources.nextElement();
+			if ("file".equals(url.getProtocol())) {
+				scanDirectory(new File(decode(url.getPath())), entries);
+			} else if ("jar".equals(url.getProtocol())) {
+				JarFile jar = ((JarURLConnection) url.openConnection()).getJarFile();
+				scanJar(jar, path + '/', entries);
+			}
+		}
+		if (entries.isEmpty())
+			throw new IllegalArgumentException("No class files of package " + packageName 
+					+ " found in directories or jars of " + loader);
+		return new ClassIndex(loader, packageName, entries);
+	}
+	
+	/**
+	 * Loads classes of the index, classes are not initialized.
+	 * @param names binary names of classes, e.g. result of {@link #beanCandidates()}
+	 * @param kind description of classes for error message, e.g. "beans"
+	 * @return loaded classes
+	 * @throws IllegalArgumentException if no name is given or a class can't be loaded
+	 */
+	public List<Class<?>> load(List<String> names, String kind) {
+		if (names.isEmpty())
+			throw new IllegalArgumentException("No " + kind + " found in package " + packageName);
+		List<Class<?>> classes = new ArrayList<Class<?>>(names.size());
+		for (String name : names) {
+			try {
+				classes.add(Class.forName(name, false, loader));
+			} catch (ClassNotFoundException e) {
+				throw new IllegalArgumentException("Can't load class " + name + " of package " + packageName, e);
+			} catch (LinkageError e) {
+				throw new IllegalArgumentException("Can't load class " + name + " of package " + packageName, e);
+			}
+		}
+		return classes;
+	}
+	
+	/**
+	 * @return binary names of all indexed classes
+	 */
+	public List<String> classNames() {
+		return new ArrayList<String>(entries.keySet());
+	}
+	
+	/**
+	 * Classes which look like beans: concrete, not anonymous, with no argument constructor and public setter.
+	 * Setters may be inherited from indexed superclasses. Classes extending a class outside of the package can't 
+	 * be decided from class files of the package, so they are candidates too.
+	 * @return binary names of classes
+	 */
+	public List<String> beanCandidates() {
+		List<String> names = new ArrayList<String>();
+		for (Entry entry : entries.values()) {
+			if (entry.isConcrete() && entry.hasMethod("<init>", "()V") && hasSetter(entry))
+				names.add(entry.name);
+		}
+		return names;
+	}
+	
+	private boolean hasSetter(Entry entry) {
+		for (Entry type = entry; type != null; type = entries.get(type.superName)) {
+			if (type.hasSetter())
+				return true;
+			if (type.superName == null || "java.lang.Object".equals(type.superName))
+				return false;
+			if (!entries.containsKey(type.superName))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return binary names of classes annotated with {@link org.wowbagger.rules.annotation.Invariants}
+	 */
+	public List<String> invariantClasses() {
+		List<String> names = new ArrayList<String>();
+		for (Entry entry : entries.values()) {
+			if (entry.annotations.contains(INVARIANTS))
+				names.add(entry.name);
+		}
+		return names;
+	}
+	
+	/**
+	 * @return binary names of concrete classes with no argument constructor which declare equals(Object)
+	 */
+	public List<String> equalsClasses() {
+		List<String> names = new ArrayList<String>();
+		for (Entry entry : entries.values()) {
+			if (entry.isConcrete() && entry.hasMethod("<init>", "()V") 
+					&& entry.hasMethod("equals", "(Ljava/lang/Object;)Z"))
+				names.add(entry.name);
+		}
+		return names;
+	}
+	
+	private static void scanDirectory(File directory, Map<String, Entry> entries) throws IOException {
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		for (File file : files) {
+			if (!file.isFile() || !file.getName().endsWith(CLASS_SUFFIX))
+				continue;
+			RandomAccessFile input = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = input.getChannel();
+				add(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), entries);
+			} finally {
+				input.close();
+			}
+		}
+	}
+	
+	private static void scanJar(JarFile jar, String prefix, Map<String, Entry> entries) throws IOException {
+		Enumeration<JarEntry> jarEntries = jar.entries();
+		byte[] buffer = new byte[8192];
+		while (jarEntries.hasMoreElements()) {
+			JarEntry jarEntry = jarEntries.nextElement();
+			String name = jarEntry.getName();
+			if (!name.startsWith(prefix) || !name.endsWith(CLASS_SUFFIX) || name.indexOf('/', prefix.length()) >= 0)
+				continue;
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(jarEntry.getSize() > 0 ? (int) jarEntry.getSize() : 1024);
+			InputStream input = jar.getInputStream(jarEntry);
+			try {
+				int read;
+				while ((read = input.read(buffer)) >= 0) {
+					bytes.write(buffer, 0, read);
+				}
+			} finally {
+				input.close();
+			}
+			add(ByteBuffer.wrap(bytes.toByteArray()), entries);
+		}
+	}
+	
+	private static void add(ByteBuffer buffer, Map<String, Entry> entries) throws IOException {
+		Entry entry = parse(buffer);
+		// module-info and package-info are not classes
+		if (entry.name.endsWith("-info"))
+			return;
+		if (!entries.containsKey(entry.name))
+			entries.put(entry.name, entry);
+	}
+	
+	/**
+	 * Parses class file structure, see chapter 4 of Java Virtual Machine Specification.
+	 */
+	private static Entry parse(ByteBuffer buffer) throws IOException {
+		try {
+			if (buffer.getInt() != MAGIC)
+				throw new IOException("Not a class file");
+			buffer.getShort(); // minor version
+			buffer.getShort(); // major version
+			ConstantPool pool = readConstantPool(buffer);
+			String[] utf8 = pool.utf8;
+			int access = buffer.getShort() & 0xFFFF;
+			String name = utf8[pool.classes[buffer.getShort() & 0xFFFF]].replace('/', '.');
+			int superClass = buffer.getShort() & 0xFFFF;
+			String superName = superClass == 0 ? null : utf8[pool.classes[superClass]].replace('/', '.');
+			skip(buffer, 2 * (buffer.getShort() & 0xFFFF)); // interfaces
+			int fields = buffer.getShort() & 0xFFFF;
+			for (int i = 0; i < fields; i++) {
+				skip(buffer, 6);
+				skipAttributes(buffer);
+			}
+			Entry entry = new Entry(name, access, superName);
+			int methods = buffer.getShort() & 0xFFFF;
+			for (int i = 0; i < methods; i++) {
+				int methodAccess = buffer.getShort() & 0xFFFF;
+				String methodName = utf8[buffer.getShort() & 0xFFFF];
+				String descriptor = utf8[buffer.getShort() & 0xFFFF];
+				entry.methods.add(new MethodEntry(methodName, descriptor, methodAccess));
+				skipAttributes(buffer);
+			}
+			int attributes = buffer.getShort() & 0xFFFF;
+			for (int i = 0; i < attributes; i++) {
+				String attribute = utf8[buffer.getShort() & 0xFFFF];
+				int length = buffer.getInt();
+				if ("RuntimeVisibleAnnotations".equals(attribute)) {
+					int annotations = buffer.getShort() & 0xFFFF;
+					for (int j = 0; j < annotations; j++) {
+						entry.annotations.add(utf8[buffer.getShort() & 0xFFFF]);
+						skipAnnotationValues(buffer);
+					}
+				} else {
+					skip(buffer, length);
+				}
+			}
+			return entry;
+		} catch (RuntimeException e) {
+			// buffer underflow, invalid indexes
+			throw new IOException("Malformed class file: " + e, e);
+		}
+	}
+	
+	/**
+	 * Reads constant pool. Only UTF8 entries are decoded and name indexes of class entries are stored, 
+	 * other entries are skipped.
+	 */
+	private static ConstantPool readConstantPool(ByteBuffer buffer) throws IOException {
+		int count = buffer.getShort() & 0xFFFF;
+		ConstantPool pool = new ConstantPool(count);
+		String[] utf8 = pool.utf8;
+		int[] classes = pool.classes;
+		for (int i = 1; i < count; i++) {
+			int tag = buffer.get() & 0xFF;
+			switch (tag) {
+			case 1: // Utf8
+				utf8[i] = readUtf8(buffer, buffer.getShort() & 0xFFFF);
+				break;
+			case 7: // Class
+				classes[i] = buffer.getShort() & 0xFFFF;
+				break;
+			case 8: // String
+			case 16: // MethodType
+			case 19: // Module
+			case 20: // Package
+				skip(buffer, 2);
+				break;
+			case 15: // MethodHandle
+				skip(buffer, 3);
+				break;
+			case 3: // Integer
+			case 4: // Float
+			case 9: // Fieldref
+			case 10: // Methodref
+			case 11: // InterfaceMethodref
+			case 12: // NameAndType
+			case 17: // Dynamic
+			case 18: // InvokeDynamic
+				skip(buffer, 4);
+				break;
+			case 5: // Long
+			case 6: // Double
+				skip(buffer, 8);
+				i++;
+				break;
+			default:
+				throw new IOException("Unknown constant pool tag " + tag);
+			}
+		}
+		return pool;
+	}
+	
+	/**
+	 * Decodes modified UTF-8.
+	 */
+	private static String readUtf8(ByteBuffer buffer, int length) {
+		char[] chars = new char[length];
+		int count = 0;
+		int end = buffer.position() + length;
+		while (buffer.position() < end) {
+			int b = buffer.get() & 0xFF;
+			if (b < 0x80) {
+				chars[count++] = (char) b;
+			} else if ((b & 0xE0) == 0xC0) {
+				chars[count++] = (char) (((b & 0x1F) << 6) | (buffer.get() & 0x3F));
+			} else {
+				int b2 = buffer.get() & 0x3F;
+				chars[count++] = (char) (((b & 0x0F) << 12) | (b2 << 6) | (buffer.get() & 0x3F));
+			}
+		}
+		return new String(chars, 0, count);
+	}
+	
+	private static void skipAttributes(ByteBuffer buffer) {
+		int attributes = buffer.getShort() & 0xFFFF;
+		for (int i = 0; i < attributes; i++) {
+			buffer.getShort();
+			skip(buffer, buffer.getInt());
+		}
+	}
+	
+	private static void skipAnnotationValues(ByteBuffer buffer) {
+		int pairs = buffer.getShort() & 0xFFFF;
+		for (int i = 0; i < pairs; i++) {
+			buffer.getShort();
+			skipElementValue(buffer);
+		}
+	}
+	
+	private static void skipElementValue(ByteBuffer buffer) {
+		char tag = (char) (buffer.get() & 0xFF);
+		switch (tag) {
+		case 'e':
+			skip(buffer, 4);
+			break;
+		case '@':
+			buffer.getShort();
+			skipAnnotationValues(buffer);
+			break;
+		case '[':
+			int values = buffer.getShort() & 0xFFFF;
+			for (int i = 0; i < values; i++) {
+				skipElementValue(buffer);
+			}
+			break;
+		default:
+			// constants and classes
+			skip(buffer, 2);
+		}
+	}
+	
+	private static void skip(ByteBuffer buffer, int bytes) {
+		buffer.position(buffer.position() + bytes);
+	}
+	
+	private static String decode(String path) {
+		try {
+			return URLDecoder.decode(path, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Decoded part of constant pool, indexed like in class file.
+	 */
+	private static class ConstantPool {
+		/** Values of UTF8 entries */
+		private final String[] utf8;
+		/** Name indexes of Class entries */
+		private final int[] classes;
+		
+		ConstantPool(int count) {
+			utf8 = new String[count];
+			classes = new int[count];
+		}
+	}
+	
+	/**
+	 * Method declared by parsed class.
+	 */
+	private static class MethodEntry {
+		private final String name;
+		private final String descriptor;
+		private final int access;
+		
+		MethodEntry(String name, String descriptor, int access) {
+			this.name = name;
+			this.descriptor = descriptor;
+			this.access = access;
+		}
+	}
+	
+	/**
+	 * Parsed class file.
+	 */
+	private static class Entry {
+		private final String name;
+		private final int access;
+		/** Binary name of super class, null for java.lang.Object */
+		private final String superName;
+		private final List<MethodEntry> methods = new ArrayList<MethodEntry>();
+		/** Descriptors of class annotations */
+		private final List<String> annotations = new ArrayList<String>();
+		
+		Entry(String name, int access, String superName) {
+			this.name = name;
+			this.access = access;
+			this.superName = superName;
+		}
+		
+		boolean isConcrete() {
+			if ((access & (ACC_INTERFACE | ACC_ABSTRACT | ACC_ANNOTATION | ACC_ENUM)) != 0)
+				return false;
+			// anonymous classes
+			int nested = name.lastIndexOf('$');
+			return nested < 0 || nested == name.length() - 1 || !Character.isDigit(name.charAt(nested + 1));
+		}
+		
+		boolean hasMethod(String methodName, String descriptor) {
+			for (MethodEntry method : methods) {
+				if (method.name.equals(methodName) && method.descriptor.equals(descriptor))
+					return true;
+			}
+			return false;
+		}
+		
+		boolean hasSetter() {
+			for (MethodEntry method : methods) {
+				if (method.name.startsWith("set") && (method.access & ACC_PUBLIC) != 0 && (method.access & ACC_STATIC) == 0 
+						&& method.descriptor.endsWith(")V") && countArguments(method.descriptor) == 1)
+					return true;
+			}
+			return false;
+		}
+		
+		private static int countArguments(String descriptor) {
+			int count = 0;
+			int i = 1;
+			while (descriptor.charAt(i) != ')') {
+				char c = descriptor.charAt(i);
+				if (c == '[') {
+					i++;
+					continue;
+				}
+				if (c == 'L')
+					i = descriptor.indexOf(';', i);
+				i++;
+				count++;
+			}
+			return count;
+		}
+	}
+}
@@ -1,11 +1,19 @@
 package org.wowbagger.rules.intern;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -88,6 +96,9 @@ public class GetterSetterTester
 	/** If true, output trace information. */
 	private boolean verbose = false;
 	
+	/** If true, use cached method handles instead of reflective calls. */
+	private boolean methodHandles = true;
+	
 	/**
 	 * Constructs a new getter/setter tester to test objects of a particular
 	 * class.
@@ -144,8 +155,23 @@ public class GetterSetterTester
 	}
 	
 	/**
-	 * Walks through the methods in the class looking for getters and setters
-	 * that are on our include list (if any) and are not on our exclude list.
+	 * Chooses how getters and setters are invoked. By default cached method
+	 * handles are used, which don't allocate argument arrays; reflection is
+	 * used for methods not accessible by handles.
+	 *
+	 * @param methodHandles
+	 * 	false to always use reflection
+	 */
+	public GetterSetterTester setMethodHandles(boolean methodHandles)
+	{
+		this.methodHandles = methodHandles;
+		return this;
+	}
+	
+	/**
+	 * Tests getters and setters of the class that are on our include list
+	 * (if any) and are not on our exclude list. Methods of the class are
+	 * scanned only once, the first time the class is tested.
 	 * @throws IllegalAccessException 
 	 * @throws IllegalArgumentException 
 	 * @throws ClassNotFoundException 
@@ -158,6 +184,133 @@ public class GetterSetterTester
 				IllegalAccessException, SecurityException,
 				ClassNotFoundException, NoSuchMethodException, InstantiationException
 	{
+		List<Property> properties = PROPERTIES.get(clazz);
+		
+		for (Property property : properties)
+		{
+			/* Check the field name against our include/exclude list. */
+			if (includes != null &&
+				! includes.contains(property.key))
+			{
+				continue;
+			}
+			if (excludes.contains(property.key))
+				continue;
+			
+			if (property.error != null)
+				throw new RuntimeException(property.error);
+				
+			testGetterSetter(property);
+		}
+	}
+	
+	/**
+	 * Tests the same properties as {@link #test()}, but doesn't stop on the
+	 * first failure.
+	 *
+	 * @return
+	 * 	Failure messages prefixed with setter name, empty if all properties
+	 * 	passed.
+	 */
+	public List<String> verify()
+	{
+		List<String> failures = new ArrayList<String>();
+		for (Property property : PROPERTIES.get(clazz))
+		{
+			if (includes != null &&
+				! includes.contains(property.key))
+			{
+				continue;
+			}
+			if (excludes.contains(property.key))
+				continue;
+			
+			try {
+				if (property.error != null)
+					throw new RuntimeException(property.error);
+				testGetterSetter(property);
+			}
+			catch (Exception e) {
+				failures.add(property.setter.getName() + ": " + e.getMessage());
+			}
+		}
+		return failures;
+	}
+	
+	/**
+	 * @return
+	 * 	True if class has at least one setter, so it can be tested.
+	 */
+	public static boolean hasProperties(Class<?> clazz)
+	{
+		return ! PROPERTIES.get(clazz).isEmpty();
+	}
+	
+	/**
+	 * Getter/setter pair discovered in a class. Pairs are cached per class, so
+	 * the reflective scan is done once no matter how many testers are created.
+	 */
+	private static class Property
+	{
+		/** Lower case field name used for include/exclude lists. */
+		private final String key;
+		private final Method getter;
+		private final Method setter;
+		private final Class<?> type;
+		/** Reason why property can't be tested, null if getter is valid. */
+		private final String error;
+		/** Setter of type (Object, Object)void, null if not accessible. */
+		private final MethodHandle setterHandle;
+		/** Getter of type (Object)Object, null if not accessible. */
+		private final MethodHandle getterHandle;
+		
+		Property(String key, Method getter, Method setter, Class<?> type, String error)
+		{
+			this.key = key;
+			this.getter = getter;
+			this.setter = setter;
+			this.type = type;
+			this.error = error;
+			this.setterHandle = handle(setter, MethodType.methodType(void.class, Object.class, Object.class));
+			this.getterHandle = getter == null ? null : handle(getter, MethodType.methodType(Object.class, Object.class));
+		}
+		
+		/**
+		 * Converts method to handle of generic type, so it can be invoked
+		 * exactly without boxing arguments into arrays.
+		 */
+		private static MethodHandle handle(Method method, MethodType type)
+		{
+			try {
+				return MethodHandles.publicLookup().unreflect(method).asType(type);
+			}
+			catch (IllegalAccessException e) {
+				/* e.g. public method of non public class, reflection is used then */
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * Properties of classes. ClassValue keeps the value with the class itself,
+	 * so cached methods don't prevent unloading of the class loader.
+	 */
+	private static final ClassValue<List<Property>> PROPERTIES = new ClassValue<List<Property>>()
+	{
+		@Override
+		protected List<Property> computeValue(Class<?> type)
+		{
+			return Collections.unmodifiableList(findProperties(type));
+		}
+	};
+	
+	/**
+	 * Walks through the methods in the class looking for single-argument
+	 * setters and their getters.
+	 */
+	private static List<Property> findProperties(Class<?> clazz)
+	{
+		List<Property> properties = new ArrayList<Property>();
 		Method[] methods = clazz.getMethods();
 		
 		for (int i = 0; i < methods.length; i++)
@@ -171,17 +324,9 @@ public class GetterSetterTester
 			if (args.length != 1)
 				continue;
 			
-			/* Check the field name against our include/exclude list. */
-			if (includes != null &&
-				! includes.contains(fieldName.toLowerCase()))
-			{
-				continue;
-			}
-			if (excludes.contains(fieldName.toLowerCase()))
-				continue;
-			
 			/* Is there a getter that returns the same type? */
 			Method getter = null;
+			String error = null;
 			String prefix = "get";
 			if(args[0].getCanonicalName().equals("java.lang.Boolean") || args[0].getCanonicalName().equals("boolean") ){
 				prefix = "is";
@@ -190,20 +335,20 @@ public class GetterSetterTester
 				getter = clazz.getMethod(prefix + fieldName,
 										new Class[] { });
 				if (getter.getReturnType() != args[0])
-					throw new RuntimeException("Incompatibile type for " +prefix + fieldName +"() and set"+fieldName+"()");;
+					error = "Incompatible type for " +prefix + fieldName +"() and set"+fieldName+"()";
 			}
 			catch (NoSuchMethodException e) {
-				throw new RuntimeException("Getter " +prefix + fieldName +"() not found");
+				error = "Getter " +prefix + fieldName +"() not found";
 			}
-				
-			testGetterSetter(getter, m, args[0]);
+			properties.add(new Property(fieldName.toLowerCase(), getter, m, args[0], error));
 		}
+		return properties;
 	}
 	
 	/**
 	 * Dummy invocation handler for our proxy objects.
 	 */
-	class DummyInvocationHandler implements InvocationHandler
+	static class DummyInvocationHandler implements InvocationHandler
 	{
 		public Object invoke(Object o, Method m, Object[] a) { return null; }
 	}
@@ -218,44 +363,68 @@ public class GetterSetterTester
 	 * @throws SecurityException 
 	 * @throws InstantiationException 
 	 */
-	private void testGetterSetter(Method get, Method set, Class<?> argType)
+	private void testGetterSetter(Property property)
 		throws InvocationTargetException, IllegalArgumentException,
 				IllegalAccessException, SecurityException,
 				ClassNotFoundException, NoSuchMethodException, InstantiationException
 	{
+		Method get = property.getter;
+		Method set = property.setter;
 		if (this.verbose)
 			System.out.println("Testing " + set.getDeclaringClass().getName() +
 							"." + set.getName());
-		Object proxy = makeProxy(argType);
+		Object proxy = makeValue(property.type);
+		boolean dummy = proxy == null;
+		if (dummy)
+			proxy = makeProxy(property.type);
 		try {
-			set.invoke(this.obj, new Object[] { proxy });
+			if (this.methodHandles && property.setterHandle != null)
+				property.setterHandle.invokeExact(this.obj, proxy);
+			else
+				set.invoke(this.obj, new Object[] { proxy });
 		}
 		catch (InvocationTargetException e) {
 			throw new RuntimeException("Setter " + set.getDeclaringClass().getName() + "." + set.getName() + " threw " + e.getTargetException().toString());
 		}
+		catch (IllegalAccessException e) {
+			throw e;
+		}
+		catch (Throwable t) {
+			throw new RuntimeException("Setter " + set.getDeclaringClass().getName() + "." + set.getName() + " threw " + t.toString());
+		}
 		if (this.verbose)
 			System.out.println("Testing " + get.getDeclaringClass().getName() +
 							"." + get.getName());
 		Object getResult;
 		try {
-			getResult = get.invoke(this.obj, new Object[] { });
+			if (this.methodHandles && property.getterHandle != null)
+				getResult = (Object) property.getterHandle.invokeExact(this.obj);
+			else
+				getResult = get.invoke(this.obj, new Object[] { });
 		}
 		catch (InvocationTargetException e) {
 			throw new RuntimeException("Setter " + set.getDeclaringClass().getName() + "." + set.getName() + " threw " + e.getTargetException().toString());			
 		}
+		catch (IllegalAccessException e) {
+			throw e;
+		}
+		catch (Throwable t) {
+			throw new RuntimeException("Setter " + set.getDeclaringClass().getName() + "." + set.getName() + " threw " + t.toString());
+		}
 		
-		if (getResult == proxy || proxy.equals(getResult))
+		/* Dummies are compared by identity, their equals returns nothing. */
+		if (getResult == proxy || !dummy && proxy.equals(getResult))
 			return;
 		throw new RuntimeException("Getter " + get.getName() +
 						" did not return value from setter");
 	}
 	
 	/**
-	 * Makes a proxy of a given class. If the class is an interface type,
-	 * uses the standard JDK proxy mechanism. If it's not, uses cglib.
-	 * The use of cglib is via reflection so that cglib is not required to
-	 * use this library unless the caller actually needs to proxy a 
-	 * concrete class.
+	 * Makes a value of a primitive, wrapper, String, BigDecimal, BigInteger
+	 * or enum type.
+	 * @return
+	 * 	The value, or null if the type needs a dummy made by
+	 * 	{@link #makeProxy(Class)}.
 	 * @throws NoSuchMethodException 
 	 * @throws SecurityException 
 	 * @throws InvocationTargetException 
@@ -263,10 +432,10 @@ public class GetterSetterTester
 	 * @throws IllegalArgumentException 
 	 */
 	@SuppressWarnings("unchecked")
-	private Object makeProxy(Class<?> type)
-		throws ClassNotFoundException, SecurityException, NoSuchMethodException,
+	private Object makeValue(Class<?> type)
+		throws SecurityException, NoSuchMethodException,
 			IllegalArgumentException, IllegalAccessException,
-			InvocationTargetException, InstantiationException
+			InvocationTargetException
 	{
 		/* If it's a primitive type, just create it. */
 		if (type == String.class)
@@ -290,38 +459,162 @@ public class GetterSetterTester
 // JAVA5 - Comment out or remove the next two lines on older Java versions.
 		if (type.isEnum())
 			return makeEnum((Class<Enum<?>>)type);
+		return null;
+	}
+	
+	/**
+	 * Makes a new dummy instance of a given class. If the class is an
+	 * interface type, uses the standard JDK proxy mechanism. If it's not,
+	 * uses cglib. The use of cglib is via reflection so that cglib is not
+	 * required to use this library unless the caller actually needs to
+	 * proxy a concrete class. Proxy classes are cached per type, every
+	 * property gets its own instance, so a getter returning another
+	 * property of the same type is detected.
+	 * @throws NoSuchMethodException 
+	 * @throws SecurityException 
+	 * @throws InvocationTargetException 
+	 * @throws IllegalAccessException 
+	 * @throws IllegalArgumentException 
+	 */
+	private static Object makeProxy(Class<?> type)
+		throws ClassNotFoundException, SecurityException, NoSuchMethodException,
+			IllegalArgumentException, IllegalAccessException,
+			InvocationTargetException, InstantiationException
+	{
+		/* Proxy classes are expensive to generate, reuse them. */
+		Constructor<?> constructor;
+		try {
+			constructor = PROXY_CONSTRUCTORS.get(type);
+		} catch (ProxyException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ClassNotFoundException)
+				throw (ClassNotFoundException) cause;
+			if (cause instanceof NoSuchMethodException)
+				throw (NoSuchMethodException) cause;
+			if (cause instanceof IllegalAccessException)
+				throw (IllegalAccessException) cause;
+			throw (InvocationTargetException) cause;
+		}
+		if (type.isInterface())
+			return constructor.newInstance(new Object[] { new DummyInvocationHandler() });
 		
+		/* Callbacks of cglib class are passed to its constructor by thread local. */
+		Cglib.REGISTER_CALLBACKS.invoke(null, new Object[] { constructor.getDeclaringClass(), Cglib.CALLBACKS });
+		try {
+			return constructor.newInstance(new Object[0]);
+		}
+		finally {
+			Cglib.REGISTER_CALLBACKS.invoke(null, new Object[] { constructor.getDeclaringClass(), null });
+		}
+	}
+	
+	/**
+	 * Constructors of proxy classes of interfaces and classes. The cache
+	 * has no size limit: like {@link #PROPERTIES}, ClassValue keeps the
+	 * entry with the proxied class and the proxy class is defined by its
+	 * class loader, so an entry never outlives the class loader of a
+	 * tested bean and there is at most one entry per proxied class.
+	 */
+	private static final ClassValue<Constructor<?>> PROXY_CONSTRUCTORS = new ClassValue<Constructor<?>>()
+	{
+		@Override
+		protected Constructor<?> computeValue(Class<?> type)
+		{
+			try {
+				Class<?> proxyClass = makeClassProxy(type).getClass();
+				if (type.isInterface())
+					return proxyClass.getConstructor(new Class<?>[] { InvocationHandler.class });
+				return proxyClass.getDeclaredConstructor(new Class<?>[0]);
+			} catch (ClassNotFoundException e) {
+				throw new ProxyException(e);
+			} catch (NoSuchMethodException e) {
+				throw new ProxyException(e);
+			} catch (IllegalAccessException e) {
+				throw new ProxyException(e);
+			} catch (InvocationTargetException e) {
+				throw new ProxyException(e);
+			}
+		}
+	};
+	
+	/**
+	 * Carries checked exception of proxy creation out of ClassValue.
+	 */
+	private static class ProxyException extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		ProxyException(Exception cause)
+		{
+			super(cause);
+		}
+	}
+	
+	private static Object makeClassProxy(Class<?> type)
+		throws ClassNotFoundException, IllegalArgumentException,
+			IllegalAccessException, InvocationTargetException
+	{
 		/* Use JDK dynamic proxy if the argument is an interface. */
 		if (type.isInterface())
 			return Proxy.newProxyInstance(type.getClassLoader(),
 							new Class[] { type },
 							new DummyInvocationHandler());
 		
-		/* Get the CGLib classes we need. */
-		Class<?> enhancerClass = null;
-		Class<?> callbackClass = null;
-		Class<?> fixedValueClass = null;
-		try {
-			enhancerClass = Class.forName("net.sf.cglib.proxy.Enhancer");
-			callbackClass = Class.forName("net.sf.cglib.proxy.Callback");
-			fixedValueClass = Class.forName("net.sf.cglib.proxy.FixedValue");
-		}
-		catch (ClassNotFoundException e) {
+		if (Cglib.CREATE == null)
 			throw new ClassNotFoundException("Need cglib to make a dummy " +
 							type.getName() + ". Make sure cglib.jar is on " +
 							"your classpath.");
-		}
-
-		/* Make a dummy callback (proxies within proxies!) */
-		Object callback;
-		callback = Proxy.newProxyInstance(callbackClass.getClassLoader(),
+		return Cglib.CREATE.invoke(null, new Object[] { type, Cglib.CALLBACK });
+	}
+	
+	/**
+	 * CGLib classes we need, looked up once. Fields are null if cglib is not
+	 * on the classpath.
+	 */
+	private static class Cglib
+	{
+		/** Enhancer.create(Class, Callback) */
+		private static final Method CREATE;
+		
+		/** Enhancer.registerCallbacks(Class, Callback[]) */
+		private static final Method REGISTER_CALLBACKS;
+		
+		/** Dummy callback (proxies within proxies!) */
+		private static final Object CALLBACK;
+		
+		/** Callback[] with the dummy callback */
+		private static final Object CALLBACKS;
+		
+		static {
+			Method create = null;
+			Method registerCallbacks = null;
+			Object callback = null;
+			Object callbacks = null;
+			try {
+				Class<?> enhancerClass = Class.forName("net.sf.cglib.proxy.Enhancer");
+				Class<?> callbackClass = Class.forName("net.sf.cglib.proxy.Callback");
+				Class<?> fixedValueClass = Class.forName("net.sf.cglib.proxy.FixedValue");
+				callback = Proxy.newProxyInstance(callbackClass.getClassLoader(),
 										new Class[] { fixedValueClass },
 										new DummyInvocationHandler());
-		
-		Method createMethod = enhancerClass.getMethod("create",
+				callbacks = Array.newInstance(callbackClass, 1);
+				Array.set(callbacks, 0, callback);
+				create = enhancerClass.getMethod("create",
 									new Class[] { Class.class, callbackClass });
-		
-		return createMethod.invoke(null, new Object[] { type, callback});
+				registerCallbacks = enhancerClass.getMethod("registerCallbacks",
+									new Class[] { Class.class, callbacks.getClass() });
+			}
+			catch (ClassNotFoundException e) {
+				create = null;
+			}
+			catch (NoSuchMethodException e) {
+				create = null;
+			}
+			CREATE = create;
+			REGISTER_CALLBACKS = create == null ? null : registerCallbacks;
+			CALLBACK = callback;
+			CALLBACKS = callbacks;
+		}
 	}
 	
 	/**
@@ -0,0 +1,114 @@
+package org.wowbagger.rules.intern;
+
+import java.util.Arrays;
+
+/**
+ * Quality of hash codes of distinct objects: collision rate, occupancy of buckets of HashMap sized 
+ * for the objects (hashes are spread like HashMap does) and avalanche - average number of hash bits 
+ * changed by small change of the object, relative to ideal 16 bits.
+ */
+public class HashDistribution {
+
+	/** Length of HashMap bucket which is converted to tree. */
+	public static final int TREEIFY_THRESHOLD = 8;
+	
+	private final int count;
+	
+	private final int distinctHashes;
+	
+	private final int tableSize;
+	
+	private final int usedBuckets;
+	
+	private final int maxBucketLength;
+	
+	private final double avalanche;
+	
+	/**
+	 * @param hashes hash codes of distinct objects
+	 * @param changedBits numbers of changed hash bits after small change of the object, null if not measured
+	 */
+	public HashDistribution(int[] hashes, int[] changedBits) {
+		count = hashes.length;
+		int[] sorted = hashes.clone();
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1])
+				distinct++;
+		}
+		distinctHashes = distinct;
+		
+		int size = 1;
+		while (size * 3 < count * 4) { // default load factor 0.75
+			size <<= 1;
+		}
+		tableSize = size;
+		int[] buckets = new int[size];
+		int used = 0;
+		int max = 0;
+		for (int hash : hashes) {
+			int index = (hash ^ (hash >>> 16)) & (size - 1);
+			if (buckets[index]++ == 0)
+				used++;
+			max = Math.max(max, buckets[index]);
+		}
+		usedBuckets = used;
+		maxBucketLength = max;
+		
+		if (changedBits == null || changedBits.length == 0) {
+			avalanche = Double.NaN;
+		} else {
+			long sum = 0;
+			for (int bits : changedBits) {
+				sum += bits;
+			}
+			avalanche = sum / (16.0 * changedBits.length);
+		}
+	}
+	
+	public int getCount() {
+		return count;
+	}
+	
+	public int getDistinctHashes() {
+		return distinctHashes;
+	}
+	
+	/** Part of objects whose hash code is same as hash code of another object. */
+	public double getCollisionRate() {
+		return count == 0 ? 0 : 1 - (double) distinctHashes / count;
+	}
+	
+	public int getTableSize() {
+		return tableSize;
+	}
+	
+	public int getUsedBuckets() {
+		return usedBuckets;
+	}
+	
+	/** Used buckets relative to number expected for random hashes, 1 is ideal. */
+	public double getBucketOccupancy() {
+		if (count == 0)
+			return 1;
+		double expected = tableSize * (1 - Math.exp(-(double) count / tableSize));
+		return usedBuckets / expected;
+	}
+	
+	public int getMaxBucketLength() {
+		return maxBucketLength;
+	}
+	
+	/** Average changed hash bits relative to 16, 1 is ideal, NaN if not measured. */
+	public double getAvalanche() {
+		return avalanche;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%d objects, %d distinct hashes (collision rate %.4f), %d of %d buckets used (occupancy %.3f), "
+				+ "longest bucket %d, avalanche %.3f", count, distinctHashes, getCollisionRate(), usedBuckets, tableSize,
+				getBucketOccupancy(), maxBucketLength, avalanche);
+	}
+}
@@ -0,0 +1,158 @@
+package org.wowbagger.rules.intern;
+
+/**
+ * Histogram of latencies in nanoseconds, based on the idea of HdrHistogram.
+ * 
+ * Values are counted in log-linear buckets: every power of two range is split into 32 equal sub buckets,
+ * so each recorded value is kept with relative error below ~3%. Values up to 2^40 ns (about 18 minutes) 
+ * are tracked, bigger ones are counted in the last bucket, whose percentile is the recorded maximum. 
+ * Exact minimum and maximum are stored as well.
+ * 
+ * Counts of each power of two range are allocated when the first value of the range is recorded, so histogram
+ * of few values stays small. Recording is not synchronized - every thread should use own histogram,
+ * histograms are merged with {@link #add(LatencyHistogram)} after recording is finished.
+ */
+public class LatencyHistogram {
+
+	/** Bits of value kept in a bucket. */
+	private static final int SUB_BUCKET_BITS = 6;
+	
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	
+	private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+	
+	/** Highest tracked bit of the value. */
+	private static final int MAX_BIT = 39;
+	
+	private static final long MAX_TRACKED = (1L << (MAX_BIT + 1)) - 1;
+	
+	/** Counts of values below SUB_BUCKET_COUNT in the first array, counts of each higher power of two in next ones. */
+	private final long[][] counts = new long[magnitude(index(MAX_TRACKED)) + 1][];
+	
+	private long total;
+	
+	private long min = Long.MAX_VALUE;
+	
+	private long max;
+	
+	/**
+	 * Records single value.
+	 * @param nanos latency in nanoseconds, negative values are counted as 0
+	 */
+	public void record(long nanos) {
+		long value = nanos < 0 ? 0 : nanos;
+		increment(index(value < MAX_TRACKED ? value : MAX_TRACKED), 1);
+		total++;
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+	}
+	
+	/**
+	 * Adds all values recorded by other histogram.
+	 * @param other histogram to add
+	 */
+	public void add(LatencyHistogram other) {
+		for (int m = 0; m < counts.length; m++) {
+			long[] otherCounts = other.counts[m];
+			if (otherCounts == null)
+				continue;
+			for (int i = 0; i < otherCounts.length; i++) {
+				if (otherCounts[i] != 0)
+					increment(firstIndex(m) + i, otherCounts[i]);
+			}
+		}
+		total += other.total;
+		if (other.min < min)
+			min = other.min;
+		if (other.max > max)
+			max = other.max;
+	}
+	
+	/**
+	 * @return number of recorded values
+	 */
+	public long getCount() {
+		return total;
+	}
+	
+	/**
+	 * @return smallest recorded value, 0 if histogram is empty
+	 */
+	public long getMin() {
+		return total == 0 ? 0 : min;
+	}
+	
+	/**
+	 * @return biggest recorded value
+	 */
+	public long getMax() {
+		return max;
+	}
+	
+	/**
+	 * Returns value below which given percent of recorded values fall. Result is the upper bound of
+	 * the bucket, but never more than recorded maximum.
+	 * @param percentile percentile in range 0-100
+	 * @return latency in nanoseconds, 0 if histogram is empty
+	 */
+	public long getPercentile(double percentile) {
+		if (total == 0)
+			return 0;
+		long rank = (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total);
+		if (rank < 1)
+			rank = 1;
+		long seen = 0;
+		for (int m = 0; m < counts.length; m++) {
+			if (counts[m] == null)
+				continue;
+			for (int i = 0; i < counts[m].length; i++) {
+				seen += counts[m][i];
+				if (seen >= rank)
+					return Math.max(Math.min(highestEquivalent(firstIndex(m) + i), max), getMin());
+			}
+		}
+		return max;
+	}
+	
+	private void increment(int index, long count) {
+		int m = magnitude(index);
+		long[] magnitudeCounts = counts[m];
+		if (magnitudeCounts == null) {
+			magnitudeCounts = new long[m == 0 ? SUB_BUCKET_COUNT : SUB_BUCKET_HALF];
+			counts[m] = magnitudeCounts;
+		}
+		magnitudeCounts[index - firstIndex(m)] += count;
+	}
+	
+	/** Array of counts which holds bucket of given index. */
+	private static int magnitude(int index) {
+		return index < SUB_BUCKET_COUNT ? 0 : (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+	}
+	
+	/** Index of the first bucket in array of given magnitude. */
+	private static int firstIndex(int magnitude) {
+		return magnitude == 0 ? 0 : SUB_BUCKET_COUNT + (magnitude - 1) * SUB_BUCKET_HALF;
+	}
+	
+	private static int index(long value) {
+		if (value < SUB_BUCKET_COUNT)
+			return (int) value;
+		int bit = 63 - Long.numberOfLeadingZeros(value);
+		int shift = bit - (SUB_BUCKET_BITS - 1);
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) ((value >> shift) - SUB_BUCKET_HALF);
+	}
+	
+	private static long highestEquivalent(int index) {
+		if (index < SUB_BUCKET_COUNT)
+			return index;
+		// the last bucket counts also values beyond tracked maximum
+		if (index == index(MAX_TRACKED))
+			return Long.MAX_VALUE;
+		int bucket = index - SUB_BUCKET_COUNT;
+		int shift = bucket / SUB_BUCKET_HALF + 1;
+		long sub = bucket % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+		return (sub << shift) + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,127 @@
+package org.wowbagger.rules.intern;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fills fields of objects with random values. Instance fields of primitive types, their wrappers, String, 
+ * BigDecimal, BigInteger and enums are filled, other fields are left untouched.
+ */
+public class RandomFields {
+
+	private final List<Field> fields = new ArrayList<Field>();
+	
+	public RandomFields(Class<?> type) {
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic() || !isSupported(field.getType()))
+					continue;
+				field.setAccessible(true);
+				fields.add(field);
+			}
+		}
+	}
+	
+	public boolean isEmpty() {
+		return fields.isEmpty();
+	}
+	
+	/**
+	 * Sets all supported fields to random values.
+	 */
+	public <T> T fill(T object, Random random) throws IllegalAccessException {
+		for (Field field : fields) {
+			field.set(object, value(field.getType(), random));
+		}
+		return object;
+	}
+	
+	/**
+	 * Makes small change of one random field: flips one bit of number, changes one character 
+	 * of String or selects next enum constant.
+	 */
+	public void mutate(Object object, Random random) throws IllegalAccessException {
+		Field field = fields.get(random.nextInt(fields.size()));
+		Class<?> type = field.getType();
+		Object value = field.get(object);
+		int bit = random.nextInt(64);
+		Object changed;
+		if (value == null) {
+			changed = value(type, random);
+		} else if (value instanceof Boolean) {
+			changed = !(Boolean) value;
+		} else if (value instanceof Character) {
+			changed = (char) ((Character) value ^ (1 << bit % 16));
+		} else if (value instanceof Byte) {
+			changed = (byte) ((Byte) value ^ (1 << bit % 8));
+		} else if (value instanceof Short) {
+			changed = (short) ((Short) value ^ (1 << bit % 16));
+		} else if (value instanceof Integer) {
+			changed = (Integer) value ^ (1 << bit);
+		} else if (value instanceof Long) {
+			changed = (Long) value ^ (1L << bit);
+		} else if (value instanceof Float) {
+			changed = Float.intBitsToFloat(Float.floatToIntBits((Float) value) ^ (1 << bit % 23));
+		} else if (value instanceof Double) {
+			changed = Double.longBitsToDouble(Double.doubleToLongBits((Double) value) ^ (1L << bit % 52));
+		} else if (value instanceof String) {
+			char[] chars = ((String) value).toCharArray();
+			int index = random.nextInt(chars.length);
+			chars[index] ^= 1 << bit % 5;
+			changed = new String(chars);
+		} else if (value instanceof BigInteger) {
+			changed = ((BigInteger) value).flipBit(bit);
+		} else if (value instanceof BigDecimal) {
+			BigDecimal decimal = (BigDecimal) value;
+			changed = new BigDecimal(decimal.unscaledValue().flipBit(bit), decimal.scale());
+		} else {
+			Object[] constants = type.getEnumConstants();
+			changed = constants[(((Enum<?>) value).ordinal() + 1) % constants.length];
+		}
+		field.set(object, changed);
+	}
+	
+	private static boolean isSupported(Class<?> type) {
+		return type.isPrimitive() && type != void.class || type == Boolean.class || type == Character.class 
+				|| type == Byte.class || type == Short.class || type == Integer.class || type == Long.class 
+				|| type == Float.class || type == Double.class || type == BigInteger.class || type == BigDecimal.class 
+				|| type == String.class || type.isEnum() && type.getEnumConstants().length > 0;
+	}
+	
+	private static Object value(Class<?> type, Random random) {
+		if (type == int.class || type == Integer.class)
+			return random.nextInt();
+		if (type == long.class || type == Long.class)
+			return random.nextLong();
+		if (type == double.class || type == Double.class)
+			return random.nextDouble();
+		if (type == float.class || type == Float.class)
+			return random.nextFloat();
+		if (type == boolean.class || type == Boolean.class)
+			return random.nextBoolean();
+		if (type == char.class || type == Character.class)
+			return (char) ('a' + random.nextInt(26));
+		if (type == byte.class || type == Byte.class)
+			return (byte) random.nextInt();
+		if (type == short.class || type == Short.class)
+			return (short) random.nextInt();
+		if (type == BigInteger.class)
+			return BigInteger.valueOf(random.nextLong());
+		if (type == BigDecimal.class)
+			return BigDecimal.valueOf(random.nextLong(), random.nextInt(5));
+		if (type == String.class) {
+			char[] chars = new char[1 + random.nextInt(12)];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = (char) ('a' + random.nextInt(26));
+			}
+			return new String(chars);
+		}
+		Object[] constants = type.getEnumConstants();
+		return constants[random.nextInt(constants.length)];
+	}
+}
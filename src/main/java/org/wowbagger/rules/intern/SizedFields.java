@@ -0,0 +1,78 @@
+package org.wowbagger.rules.intern;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills String, collection, map and array fields of objects with values of given size, so cost of 
+ * operations can be compared for small and large objects.
+ */
+public class SizedFields {
+
+	private final List<Field> fields = new ArrayList<Field>();
+	
+	public SizedFields(Class<?> type) {
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic() || !isSupported(field.getType()))
+					continue;
+				field.setAccessible(true);
+				fields.add(field);
+			}
+		}
+	}
+	
+	public boolean isEmpty() {
+		return fields.isEmpty();
+	}
+	
+	/**
+	 * Sets all supported fields to values of given size: strings of given length, collections and maps 
+	 * of Integers and arrays of default values.
+	 */
+	public <T> T fill(T object, int size) throws IllegalAccessException {
+		for (Field field : fields) {
+			field.set(object, value(field.getType(), size));
+		}
+		return object;
+	}
+	
+	private static boolean isSupported(Class<?> type) {
+		return type == String.class || type == CharSequence.class || type.isArray()
+				|| Collection.class.isAssignableFrom(type) 
+				&& (type.isAssignableFrom(ArrayList.class) || type.isAssignableFrom(HashSet.class))
+				|| Map.class.isAssignableFrom(type) && type.isAssignableFrom(HashMap.class);
+	}
+	
+	private static Object value(Class<?> type, int size) {
+		if (type.isArray())
+			return Array.newInstance(type.getComponentType(), size);
+		if (type == String.class || type == CharSequence.class) {
+			char[] chars = new char[size];
+			for (int i = 0; i < size; i++) {
+				chars[i] = (char) ('a' + i % 26);
+			}
+			return new String(chars);
+		}
+		if (type.isAssignableFrom(HashMap.class)) {
+			Map<Integer, Integer> map = new HashMap<Integer, Integer>();
+			for (int i = 0; i < size; i++) {
+				map.put(i, i);
+			}
+			return map;
+		}
+		Collection<Integer> collection = type.isAssignableFrom(ArrayList.class) ? new ArrayList<Integer>(size) 
+				: new HashSet<Integer>();
+		for (int i = 0; i < size; i++) {
+			collection.add(i);
+		}
+		return collection;
+	}
+}
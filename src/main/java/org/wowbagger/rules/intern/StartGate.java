@@ -0,0 +1,81 @@
+package org.wowbagger.rules.intern;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gate which releases all threads of concurrent test at once.
+ * 
+ * Gate is opened only after all threads arrived. Blocking gate parks waiting threads on a latch, spinning gate
+ * keeps them busy reading volatile flag, so they don't need to be woken up and start almost at the same moment.
+ * When there are more threads than processors, spinning threads yield from time to time to let others arrive.
+ */
+public class StartGate {
+
+	/** Number of spins between yields when processors are oversubscribed. */
+	private static final int YIELD_MASK = 1023;
+	
+	private final CountDownLatch ready;
+	
+	private final CountDownLatch go = new CountDownLatch(1);
+	
+	private final boolean spin;
+	
+	private final boolean yield;
+	
+	private volatile boolean open;
+	
+	/**
+	 * @param parties number of threads passing the gate
+	 * @param spin true for busy spinning gate, false for blocking one
+	 */
+	public StartGate(int parties, boolean spin) {
+		this.ready = new CountDownLatch(parties);
+		this.spin = spin;
+		this.yield = parties > Runtime.getRuntime().availableProcessors();
+	}
+	
+	/**
+	 * Called by worker thread, waits until gate is opened. Interruption is not propagated, 
+	 * interrupted status of the thread is set instead.
+	 */
+	public void pass() {
+		ready.countDown();
+		if (spin) {
+			int spins = 0;
+			while (!open) {
+				if (yield && (++spins & YIELD_MASK) == 0)
+					Thread.yield();
+			}
+		} else {
+			try {
+				go.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Waits until all threads arrived at the gate.
+	 */
+	public void awaitReady() throws InterruptedException {
+		ready.await();
+	}
+	
+	/**
+	 * Waits until all threads arrived at the gate or timeout expired.
+	 * @return true if all threads arrived
+	 */
+	public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+		return ready.await(timeout, unit);
+	}
+	
+	/**
+	 * Releases all waiting threads.
+	 */
+	public void open() {
+		open = true;
+		go.countDown();
+	}
+}
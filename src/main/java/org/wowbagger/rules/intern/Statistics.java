@@ -0,0 +1,94 @@
+package org.wowbagger.rules.intern;
+
+/**
+ * Basic statistics of measured samples: mean, standard deviation and 99.9% confidence interval of the mean
+ * based on Student's t-distribution.
+ */
+public class Statistics {
+
+	/** Two-sided 99.9% critical values of t-distribution for 1-30 degrees of freedom. */
+	private static final double[] T_999 = { 636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+			4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850, 3.819, 3.792, 3.768, 3.745, 3.725,
+			3.707, 3.690, 3.674, 3.659, 3.646 };
+	
+	/** Critical values for 40, 60, 120 and infinite degrees of freedom. */
+	private static final int[] T_999_LARGE_DF = { 30, 40, 60, 120, Integer.MAX_VALUE };
+	private static final double[] T_999_LARGE = { 3.646, 3.551, 3.460, 3.373, 3.291 };
+	
+	private final double[] samples;
+	
+	private final double mean;
+	
+	private final double stddev;
+	
+	public Statistics(double[] samples) {
+		this.samples = samples.clone();
+		double sum = 0;
+		for (int i = 0; i < samples.length; i++) {
+			sum += samples[i];
+		}
+		mean = samples.length == 0 ? Double.NaN : sum / samples.length;
+		double squares = 0;
+		for (int i = 0; i < samples.length; i++) {
+			squares += (samples[i] - mean) * (samples[i] - mean);
+		}
+		stddev = samples.length < 2 ? Double.NaN : Math.sqrt(squares / (samples.length - 1));
+	}
+	
+	public int getCount() {
+		return samples.length;
+	}
+	
+	public double getMean() {
+		return mean;
+	}
+	
+	public double getMin() {
+		double min = Double.NaN;
+		for (int i = 0; i < samples.length; i++) {
+			if (i == 0 || samples[i] < min)
+				min = samples[i];
+		}
+		return min;
+	}
+	
+	public double getMax() {
+		double max = Double.NaN;
+		for (int i = 0; i < samples.length; i++) {
+			if (i == 0 || samples[i] > max)
+				max = samples[i];
+		}
+		return max;
+	}
+	
+	/**
+	 * @return sample standard deviation, NaN for less than two samples
+	 */
+	public double getStandardDeviation() {
+		return stddev;
+	}
+	
+	/**
+	 * @return half width of 99.9% confidence interval of the mean, NaN for less than two samples
+	 */
+	public double getError() {
+		if (samples.length < 2)
+			return Double.NaN;
+		return criticalValue(samples.length - 1) * stddev / Math.sqrt(samples.length);
+	}
+	
+	private static double criticalValue(int degreesOfFreedom) {
+		if (degreesOfFreedom <= T_999.length)
+			return T_999[degreesOfFreedom - 1];
+		// interpolation linear in 1/df between known values
+		for (int i = 1; i < T_999_LARGE_DF.length; i++) {
+			if (degreesOfFreedom <= T_999_LARGE_DF[i]) {
+				double lower = 1.0 / T_999_LARGE_DF[i - 1];
+				double upper = T_999_LARGE_DF[i] == Integer.MAX_VALUE ? 0 : 1.0 / T_999_LARGE_DF[i];
+				double position = (1.0 / degreesOfFreedom - upper) / (lower - upper);
+				return T_999_LARGE[i] + position * (T_999_LARGE[i - 1] - T_999_LARGE[i]);
+			}
+		}
+		return T_999_LARGE[T_999_LARGE.length - 1];
+	}
+}
@@ -0,0 +1,49 @@
+package org.wowbagger.rules.intern;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Bytes allocated by current thread, read from HotSpot extension of {@link ThreadMXBean}.
+ * 
+ * On JVMs without the extension allocation is reported as not supported.
+ */
+public final class ThreadAllocation {
+
+	private static final ThreadMXBean MX = ManagementFactory.getThreadMXBean();
+	
+	private static final boolean SUPPORTED = enableAllocatedMemory();
+	
+	private ThreadAllocation() {
+	}
+	
+	private static boolean enableAllocatedMemory() {
+		try {
+			if (!(MX instanceof com.sun.management.ThreadMXBean))
+				return false;
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) MX;
+			if (!bean.isThreadAllocatedMemorySupported())
+				return false;
+			if (!bean.isThreadAllocatedMemoryEnabled())
+				bean.setThreadAllocatedMemoryEnabled(true);
+			return true;
+		} catch (SecurityException e) {
+			return false;
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+	
+	public static boolean isSupported() {
+		return SUPPORTED;
+	}
+	
+	/**
+	 * @return bytes allocated by current thread so far, -1 if not supported
+	 */
+	public static long currentThread() {
+		if (!SUPPORTED)
+			return -1;
+		return ((com.sun.management.ThreadMXBean) MX).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
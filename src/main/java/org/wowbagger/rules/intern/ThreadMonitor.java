@@ -0,0 +1,140 @@
+package org.wowbagger.rules.intern;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Helper around {@link ThreadMXBean} used for watching threads of concurrent tests: deadlock detection,
+ * thread dumps and blocking statistics.
+ * 
+ * Features which are not supported by the running JVM are silently skipped. Contention monitoring is enabled 
+ * only between {@link #startContentionMonitoring()} and {@link #stopContentionMonitoring()}, previous state of the JVM
+ * is restored when the last user stops it.
+ */
+public final class ThreadMonitor {
+
+	private static final ThreadMXBean MX = ManagementFactory.getThreadMXBean();
+	
+	/** Number of running users of contention monitoring, guarded by class lock. */
+	private static int contentionUsers;
+	
+	/** Whether contention monitoring was enabled before the first user started it, guarded by class lock. */
+	private static boolean contentionWasEnabled;
+	
+	private static volatile boolean contentionMonitoring;
+	
+	private ThreadMonitor() {
+	}
+	
+	/**
+	 * Enables contention monitoring if JVM supports it, every call must be followed by 
+	 * {@link #stopContentionMonitoring()}.
+	 */
+	public static synchronized void startContentionMonitoring() {
+		if (contentionUsers++ > 0)
+			return;
+		try {
+			if (!MX.isThreadContentionMonitoringSupported())
+				return;
+			contentionWasEnabled = MX.isThreadContentionMonitoringEnabled();
+			if (!contentionWasEnabled)
+				MX.setThreadContentionMonitoringEnabled(true);
+			contentionMonitoring = true;
+		} catch (SecurityException e) {
+			contentionMonitoring = false;
+		}
+	}
+	
+	/**
+	 * Ends use of contention monitoring, the last user restores state from before the first 
+	 * {@link #startContentionMonitoring()}.
+	 */
+	public static synchronized void stopContentionMonitoring() {
+		if (contentionUsers == 0 || --contentionUsers > 0)
+			return;
+		try {
+			if (contentionMonitoring && !contentionWasEnabled)
+				MX.setThreadContentionMonitoringEnabled(false);
+		} catch (SecurityException e) {
+			// state can't be restored without permission, which was granted when it was enabled
+		} finally {
+			contentionMonitoring = false;
+		}
+	}
+	
+	/**
+	 * Returns how many times and how long given thread was blocked on monitors so far.
+	 * @param thread monitored thread
+	 * @return array {count, milliseconds} or null if contention monitoring is not available for this thread 
+	 */
+	public static long[] blocked(Thread thread) {
+		if (!contentionMonitoring)
+			return null;
+		ThreadInfo info = MX.getThreadInfo(thread.getId());
+		if (info == null || info.getBlockedTime() < 0)
+			return null;
+		return new long[] { info.getBlockedCount(), info.getBlockedTime() };
+	}
+	
+	/**
+	 * Finds deadlocked threads among given ones.
+	 * @param ids identifiers of watched threads
+	 * @return identifiers of watched threads which are deadlocked, empty array if there are none
+	 */
+	public static long[] findDeadlocked(long[] ids) {
+		long[] deadlocked = MX.isSynchronizerUsageSupported() ? MX.findDeadlockedThreads() : MX.findMonitorDeadlockedThreads();
+		if (deadlocked == null)
+			return new long[0];
+		long[] watched = ids.clone();
+		Arrays.sort(watched);
+		long[] result = new long[deadlocked.length];
+		int found = 0;
+		for (int i = 0; i < deadlocked.length; i++) {
+			if (Arrays.binarySearch(watched, deadlocked[i]) >= 0)
+				result[found++] = deadlocked[i];
+		}
+		return Arrays.copyOf(result, found);
+	}
+	
+	/**
+	 * Dumps stacks of given threads with owned monitors and locks.
+	 * @param ids identifiers of threads
+	 * @return formatted dump
+	 */
+	public static String dump(long[] ids) {
+		ThreadInfo[] infos = MX.getThreadInfo(ids, MX.isObjectMonitorUsageSupported(), MX.isSynchronizerUsageSupported());
+		StringBuilder sb = new StringBuilder();
+		for (ThreadInfo info : infos) {
+			if (info == null)
+				continue;
+			sb.append('"').append(info.getThreadName()).append("\" ").append(info.getThreadState());
+			if (info.getLockName() != null)
+				sb.append(" on ").append(info.getLockName());
+			if (info.getLockOwnerName() != null)
+				sb.append(" owned by \"").append(info.getLockOwnerName()).append('"');
+			sb.append('\n');
+			StackTraceElement[] stack = info.getStackTrace();
+			MonitorInfo[] monitors = info.getLockedMonitors();
+			for (int depth = 0; depth < stack.length; depth++) {
+				sb.append("\tat ").append(stack[depth]).append('\n');
+				for (MonitorInfo monitor : monitors) {
+					if (monitor.getLockedStackDepth() == depth)
+						sb.append("\t- locked ").append(monitor).append('\n');
+				}
+			}
+			LockInfo[] synchronizers = info.getLockedSynchronizers();
+			if (synchronizers.length > 0) {
+				sb.append("\tLocked synchronizers:\n");
+				for (LockInfo synchronizer : synchronizers) {
+					sb.append("\t- ").append(synchronizer).append('\n');
+				}
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+}
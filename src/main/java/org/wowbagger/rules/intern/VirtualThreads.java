@@ -0,0 +1,79 @@
+package org.wowbagger.rules.intern;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Starts virtual threads when running JVM supports them (Java 21 and newer).
+ * 
+ * Library is compiled for old Java versions, so virtual threads API is used via reflection only.
+ * On older JVM {@link #isSupported()} returns false and callers should fall back to platform threads.
+ */
+public final class VirtualThreads {
+
+	/** Thread.ofVirtual(), null if not supported. */
+	private static final Method OF_VIRTUAL;
+	
+	/** Thread.Builder.name(String) */
+	private static final Method NAME;
+	
+	/** Thread.Builder.start(Runnable) */
+	private static final Method START;
+	
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method start = null;
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			name = builder.getMethod("name", new Class<?>[] { String.class });
+			start = builder.getMethod("start", new Class<?>[] { Runnable.class });
+			ofVirtual = Thread.class.getMethod("ofVirtual", new Class<?>[0]);
+			// preview versions throw UnsupportedOperationException
+			ofVirtual.invoke(null, new Object[0]);
+		} catch (Exception e) {
+			ofVirtual = null;
+		} catch (LinkageError e) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		START = start;
+	}
+	
+	private VirtualThreads() {
+	}
+	
+	/**
+	 * @return true if virtual threads can be started on this JVM
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+	
+	/**
+	 * Starts new virtual thread.
+	 * @param task task to execute
+	 * @param name name of the thread
+	 * @return started thread
+	 * @throws UnsupportedOperationException if virtual threads are not supported
+	 */
+	public static Thread start(Runnable task, String name) {
+		if (!isSupported())
+			throw new UnsupportedOperationException("Virtual threads are not supported by " + System.getProperty("java.version"));
+		try {
+			Object builder = OF_VIRTUAL.invoke(null, new Object[0]);
+			builder = NAME.invoke(builder, new Object[] { name });
+			return (Thread) START.invoke(builder, new Object[] { task });
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getTargetException();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package org.wowbagger.rules;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wowbagger.rules.intern.BeanVerifier;
+
+public class BeanVerifierTest {
+
+	public static class Hidden {
+	}
+	
+	/**
+	 * Bean with property of type which can't be loaded.
+	 */
+	public static class HidingBean {
+		private Hidden hidden;
+		
+		public Hidden getHidden() {
+			return hidden;
+		}
+		public void setHidden(Hidden hidden) {
+			this.hidden = hidden;
+		}
+	}
+	
+	public static class BadBean {
+		private String name;
+		
+		public String getName() {
+			return null;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+	
+	/**
+	 * Defines own copy of {@link HidingBean}, type of its property isn't found.
+	 */
+	private static class HidingLoader extends ClassLoader {
+		
+		HidingLoader() {
+			super(BeanVerifierTest.class.getClassLoader());
+		}
+		
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (name.equals(Hidden.class.getName()))
+				throw new ClassNotFoundException(name);
+			if (!name.equals(HidingBean.class.getName()))
+				return super.loadClass(name, resolve);
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> clazz = findLoadedClass(name);
+				if (clazz == null) {
+					byte[] bytes = read(name.replace('.', '/') + ".class");
+					clazz = defineClass(name, bytes, 0, bytes.length);
+				}
+				return clazz;
+			}
+		}
+		
+		private byte[] read(String resource) throws ClassNotFoundException {
+			InputStream input = getParent().getResourceAsStream(resource);
+			if (input == null)
+				throw new ClassNotFoundException(resource);
+			try {
+				try {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					byte[] buffer = new byte[4096];
+					int read;
+					while ((read = input.read(buffer)) >= 0) {
+						bytes.write(buffer, 0, read);
+					}
+					return bytes.toByteArray();
+				} finally {
+					input.close();
+				}
+			} catch (IOException e) {
+				throw new ClassNotFoundException(resource, e);
+			}
+		}
+	}
+	
+	@Test
+	public void linkageErrorFailsOnlyItsBean() throws Exception {
+		List<Class<?>> classes = new ArrayList<Class<?>>();
+		classes.add(GetterSetterTesterBenchmarkTest.Bean.class);
+		Class<?> hidingBean = Class.forName(HidingBean.class.getName(), false, new HidingLoader());
+		Assert.assertTrue(BeanVerifier.isBean(hidingBean));
+		classes.add(hidingBean);
+		classes.add(BadBean.class);
+		Map<String, List<String>> failures = new BeanVerifier(new String[0], false).verify(classes);
+		Assert.assertEquals(failures.toString(), 2, failures.size());
+		Assert.assertTrue(failures.containsKey(BadBean.class.getName()));
+		List<String> hiding = failures.get(HidingBean.class.getName());
+		Assert.assertNotNull(failures.toString(), hiding);
+		Assert.assertTrue(hiding.toString(), hiding.toString().contains("NoClassDefFoundError"));
+	}
+}
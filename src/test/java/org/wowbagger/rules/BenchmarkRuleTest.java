@@ -0,0 +1,43 @@
+package org.wowbagger.rules;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.wowbagger.rules.annotation.Benchmark;
+
+public class BenchmarkRuleTest {
+
+	@Rule
+	public BenchmarkRule benchmark = new BenchmarkRule();
+	
+	@Benchmark(forks = 2, warmupIterations = 1, measurementIterations = 3, iterationMs = 10)
+	@Test
+	public void testParse() {
+		benchmark.blackhole().consume(Integer.parseInt("12345"));
+	}
+	
+	@Test
+	public void testLimit() throws Throwable {
+		Benchmark limit = BenchmarkRuleTest.class.getMethod("limited").getAnnotation(Benchmark.class);
+		BenchmarkRule rule = new BenchmarkRule();
+		try {
+			rule.apply(new Statement() {
+				@Override
+				public void evaluate() throws Throwable {
+					Thread.sleep(1);
+				}
+			}, Description.createTestDescription(BenchmarkRuleTest.class, "limited", limit)).evaluate();
+			Assert.fail("limit should be exceeded");
+		} catch (AssertionError e) {
+			Assert.assertTrue(e.getMessage().contains("exceeds limit"));
+		}
+		Assert.assertEquals(3, rule.getLastResult().getIterations());
+		Assert.assertTrue(rule.getLastResult().getMeanNanosPerOp() > 1000000);
+	}
+	
+	@Benchmark(warmupIterations = 0, measurementIterations = 3, iterationMs = 5, maxNanosPerOp = 1000)
+	public void limited() {
+	}
+}
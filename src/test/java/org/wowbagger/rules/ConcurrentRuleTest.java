@@ -0,0 +1,324 @@
+package org.wowbagger.rules;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.wowbagger.rules.annotation.Concurrent;
+import org.wowbagger.rules.annotation.MaxLatency;
+import org.wowbagger.rules.annotation.Warmup;
+import org.wowbagger.rules.intern.VirtualThreads;
+
+public class ConcurrentRuleTest {
+
+	public static class Failing {
+		
+		@Concurrent(3)
+		public void failAll() {
+			throw new IllegalStateException("failed");
+		}
+		
+		@Concurrent(value = 4, durationMs = 60000, failFast = true)
+		public void failFirst() throws InterruptedException {
+			if (Thread.currentThread().getName().endsWith("-Thread-0"))
+				throw new IllegalStateException("first");
+			Thread.sleep(1);
+		}
+		
+		@Concurrent(value = 20000, virtual = true)
+		public void manyVirtual() {
+		}
+		
+		@Concurrent(value = 2, timeoutMs = 200)
+		public void timeout() throws InterruptedException {
+			Thread.sleep(60000);
+		}
+		
+		@Concurrent(value = 2, timeoutMs = 300)
+		@Warmup(iterations = 1)
+		public void warmupTimeout() throws InterruptedException {
+			Thread.sleep(10000);
+		}
+		
+		private final Lock first = new ReentrantLock();
+		private final Lock second = new ReentrantLock();
+		private final CyclicBarrier locked = new CyclicBarrier(2);
+		
+		@Concurrent(value = 2, timeoutMs = 60000)
+		public void deadlock() throws Exception {
+			// threads take locks in opposite order, interruptible locks let cancelled workers finish
+			boolean reversed = Thread.currentThread().getName().endsWith("-Thread-1");
+			Lock one = reversed ? second : first;
+			Lock two = reversed ? first : second;
+			one.lockInterruptibly();
+			try {
+				locked.await();
+				two.lockInterruptibly();
+				two.unlock();
+			} finally {
+				one.unlock();
+			}
+		}
+	}
+
+	public static class Measured {
+		
+		@Concurrent(value = 3, iterations = 4)
+		public void iterations() {
+		}
+		
+		@Concurrent(value = 2, durationMs = 100)
+		public void duration() throws InterruptedException {
+			Thread.sleep(1);
+		}
+		
+		@Concurrent(value = 4, iterations = 5, scalability = true)
+		public void scalability() {
+		}
+		
+		@Concurrent(value = 4, spinStart = true)
+		public void spinStart() {
+		}
+	}
+	
+	private static final AtomicInteger invocations = new AtomicInteger();
+	
+	private static final Set<Thread> workers = Collections.synchronizedSet(new HashSet<Thread>());
+	
+	@ClassRule
+	public static WorkerPool pool = new WorkerPool();
+	
+	@Rule
+	public ConcurrentRule rule = new ConcurrentRule(pool);
+	
+	@Concurrent(5)
+	@Test
+	public void testFirst() {
+		invocations.incrementAndGet();
+		workers.add(Thread.currentThread());
+		Assert.assertTrue(Thread.currentThread().getName().startsWith("testFirst-Thread-"));
+	}
+	
+	@Concurrent(5)
+	@Test
+	public void testSecond() {
+		invocations.incrementAndGet();
+		workers.add(Thread.currentThread());
+	}
+	
+	@Concurrent(value = 5, virtual = true)
+	@Test
+	public void testVirtual() {
+		// platform threads are used on JVM without virtual threads
+		invocations.incrementAndGet();
+	}
+	
+	@Concurrent(value = 3, iterations = 4)
+	@Test
+	public void testIterations() {
+		invocations.incrementAndGet();
+	}
+	
+	@Concurrent(value = 2, iterations = 10)
+	@MaxLatency(p99 = 5, unit = TimeUnit.SECONDS)
+	@Test
+	public void testLatency() {
+		invocations.incrementAndGet();
+	}
+	
+	@Concurrent(value = 2, iterations = 3)
+	@Warmup(iterations = 5)
+	@Test
+	public void testWarmup() {
+		invocations.incrementAndGet();
+	}
+	
+	@Concurrent(value = 2, spinStart = true)
+	@Test
+	public void testSpinStart() {
+		invocations.incrementAndGet();
+	}
+	
+	@Concurrent(value = 4, iterations = 5, scalability = true)
+	@Test
+	public void testScalability() {
+		// runs with 1, 2 and 4 threads
+		invocations.incrementAndGet();
+	}
+	
+	@Test
+	public void testFailuresAreCombined() throws Throwable {
+		try {
+			evaluate("failAll");
+			Assert.fail("failures should be reported");
+		} catch (AssertionError e) {
+			Assert.assertTrue(e.getMessage().startsWith("3 of 3 threads failed"));
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+	
+	@Test(timeout = 30000)
+	public void testFailFast() throws Throwable {
+		try {
+			evaluate("failFirst");
+			Assert.fail("failure should be reported");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("first", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testManyVirtualThreadsNeedVirtualThreads() throws Throwable {
+		Assume.assumeTrue(!VirtualThreads.isSupported());
+		try {
+			evaluate("manyVirtual");
+			Assert.fail("platform threads should not be started instead of 20000 virtual threads");
+		} catch (UnsupportedOperationException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("20000 platform threads"));
+		}
+	}
+	
+	@Test(timeout = 30000)
+	public void testTimeout() throws Throwable {
+		try {
+			evaluate("timeout");
+			Assert.fail("timeout should be reported");
+		} catch (AssertionError e) {
+			Assert.assertTrue(e.getMessage().startsWith("Test timed out after 200 ms"));
+			Assert.assertTrue(e.getMessage().contains("\"timeout-Thread-0\""));
+		}
+	}
+	
+	@Test(timeout = 5000)
+	public void testWarmupTimeout() throws Throwable {
+		try {
+			evaluate("warmupTimeout");
+			Assert.fail("timeout should be reported");
+		} catch (AssertionError e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Test timed out after 300 ms"));
+		}
+	}
+	
+	@Test(timeout = 30000)
+	public void testDeadlock() throws Throwable {
+		try {
+			evaluate("deadlock");
+			Assert.fail("deadlock should be reported");
+		} catch (AssertionError e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Deadlock of 2 threads detected"));
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("\"deadlock-Thread-0\""));
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("\"deadlock-Thread-1\""));
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("ReentrantLock"));
+		}
+	}
+	
+	@Test
+	public void testIterationsReport() throws Throwable {
+		ConcurrentReport report = measure("iterations").getLastReport();
+		Assert.assertEquals("iterations", report.getName());
+		Assert.assertEquals(3, report.getThreads());
+		Assert.assertEquals(12, report.getTotalOperations());
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(4, report.getOperations(i));
+		}
+		Assert.assertTrue(report.getElapsedNanos() > 0);
+		Assert.assertEquals(12 * 1e9 / report.getElapsedNanos(), report.getOperationsPerSecond(), 1e-6);
+		Assert.assertTrue(report.toString(), report.toString().contains("3 threads, 12 ops in "));
+	}
+	
+	@Test
+	public void testDurationReport() throws Throwable {
+		ConcurrentReport report = measure("duration").getLastReport();
+		Assert.assertEquals(2, report.getThreads());
+		Assert.assertTrue(report.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+		long total = 0;
+		for (int i = 0; i < 2; i++) {
+			// each thread repeats the test until the duration expires
+			Assert.assertTrue(report.toString(), report.getOperations(i) > 1);
+			total += report.getOperations(i);
+		}
+		Assert.assertEquals(total, report.getTotalOperations());
+		Assert.assertTrue(report.getOperationsPerSecond() > 0);
+	}
+	
+	@Test
+	public void testScalabilityReports() throws Throwable {
+		ConcurrentRule measuring = measure("scalability");
+		List<ConcurrentReport> curve = measuring.getLastScalability();
+		Assert.assertEquals(3, curve.size());
+		int threads = 1;
+		for (ConcurrentReport report : curve) {
+			Assert.assertEquals(threads, report.getThreads());
+			Assert.assertEquals(5 * threads, report.getTotalOperations());
+			Assert.assertTrue(report.toString(), report.getOperationsPerSecond() > 0);
+			threads *= 2;
+		}
+		Assert.assertSame(curve.get(2), measuring.getLastReport());
+		String table = ConcurrentReport.scalabilityTable(curve);
+		Assert.assertTrue(table, table.startsWith("scalability scalability\n"));
+		Assert.assertEquals(table, 5, table.split("\n").length);
+	}
+	
+	@Test
+	public void testStartSkew() throws Throwable {
+		ConcurrentReport report = measure("spinStart").getLastReport();
+		Assert.assertEquals(4, report.getTotalOperations());
+		// start times of all threads are taken, they can't all fall on the same nanosecond
+		Assert.assertTrue(report.toString(), report.getStartSkewNanos() > 0);
+		Assert.assertTrue(report.toString(), report.getStartSkewNanos() < report.getElapsedNanos());
+		Assert.assertTrue(report.toString(), report.toString().contains(", start skew "));
+	}
+	
+	@Test
+	public void testContentionMonitoringRestored() throws Throwable {
+		ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(mx.isThreadContentionMonitoringSupported());
+		boolean enabled = mx.isThreadContentionMonitoringEnabled();
+		mx.setThreadContentionMonitoringEnabled(false);
+		try {
+			ConcurrentReport report = measure("iterations").getLastReport();
+			// blocking is available while the test runs
+			Assert.assertTrue(report.toString(), report.getBlockedCount(0) >= 0);
+			Assert.assertFalse(mx.isThreadContentionMonitoringEnabled());
+		} finally {
+			mx.setThreadContentionMonitoringEnabled(enabled);
+		}
+	}
+	
+	private ConcurrentRule measure(String method) throws Throwable {
+		ConcurrentRule measuring = new ConcurrentRule();
+		measuring.apply(null, new FrameworkMethod(Measured.class.getMethod(method)), new Measured()).evaluate();
+		return measuring;
+	}
+	
+	private void evaluate(String method) throws Throwable {
+		new ConcurrentRule().apply(null, new FrameworkMethod(Failing.class.getMethod(method)), new Failing()).evaluate();
+	}
+	
+	@AfterClass
+	public static void verify() {
+		Assert.assertEquals(100, invocations.get());
+		for (Thread worker : workers) {
+			// pooled workers are daemon threads
+			Assert.assertTrue(worker.isDaemon());
+		}
+		// testFirst and testSecond reused the same pooled threads, no test of the class runs more than 5
+		Assert.assertTrue("Threads were not reused: " + workers.size(), workers.size() <= 5);
+		Assert.assertTrue(pool.getPoolSize() <= 5);
+	}
+}
@@ -1,8 +1,17 @@
 package org.wowbagger.rules;
 
+import java.util.List;
+
+import junit.framework.AssertionFailedError;
+
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.wowbagger.rules.annotation.Immutable;
+import org.wowbagger.rules.intern.ThreadAllocation;
 
 class SampleObjectForEquals{
 	String value;
@@ -33,14 +42,197 @@ class SampleObjectForEquals{
 	}
 }
 
+class PoorHashObject {
+	String value;
+
+	@Override
+	public int hashCode() {
+		return value == null ? 0 : value.length();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof PoorHashObject && (value == null ? ((PoorHashObject) obj).value == null 
+				: value.equals(((PoorHashObject) obj).value));
+	}
+}
+
+class StatelessObject {
+
+	@Override
+	public int hashCode() {
+		return 42;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof StatelessObject;
+	}
+}
+
+class AllocatingHashObject {
+	String value = "value";
+
+	@Override
+	public int hashCode() {
+		return (value + value.length()).hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof AllocatingHashObject && value.equals(((AllocatingHashObject) obj).value);
+	}
+}
+
+class ValueAllocatingHashObject {
+	String value;
+
+	@Override
+	public int hashCode() {
+		// allocates only for non null value
+		return value == null ? 0 : value.toUpperCase().hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof ValueAllocatingHashObject && (value == null ? ((ValueAllocatingHashObject) obj).value == null 
+				: value.equals(((ValueAllocatingHashObject) obj).value));
+	}
+}
+
+@Immutable(cachedHashCode = true)
+class UncachedKey {
+	List<Integer> items;
+
+	@Override
+	public int hashCode() {
+		return items == null ? 0 : items.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof UncachedKey && (items == null ? ((UncachedKey) obj).items == null 
+				: items.equals(((UncachedKey) obj).items));
+	}
+}
+
+@Immutable(cachedHashCode = true)
+class CachedKey extends UncachedKey {
+	private int hash;
+
+	@Override
+	public int hashCode() {
+		if (hash == 0)
+			hash = super.hashCode();
+		return hash;
+	}
+}
+
 public class FulfillEqualsContractRuleTest {
 
 	@ClassRule
 	public static FulfillEqualsContractRule<SampleObjectForEquals> rule = new FulfillEqualsContractRule<SampleObjectForEquals>(new SampleObjectForEquals());
 	
+	@ClassRule
+	public static FulfillEqualsContractRule<SampleObjectForEquals> hashRule = new FulfillEqualsContractRule<SampleObjectForEquals>(new SampleObjectForEquals())
+			.checkHashDistribution(2000).hashCodeBudget(-1, 0).costMeasurement(1, 3, 10);
+	
+	@ClassRule
+	public static FulfillEqualsContractRule<SampleObjectForEquals> factoryRule = new FulfillEqualsContractRule<SampleObjectForEquals>(
+			new FulfillEqualsContractRule.Factory<SampleObjectForEquals>() {
+				@Override
+				public SampleObjectForEquals create() {
+					SampleObjectForEquals object = new SampleObjectForEquals();
+					object.value = "value";
+					return object;
+				}
+			});
+	
 	@Test
 	public void someTest() {
 		Assert.assertTrue(true);
 	}
+	
+	@Test
+	public void poorHashCodeFails() throws Throwable {
+		FulfillEqualsContractRule<PoorHashObject> poorRule = new FulfillEqualsContractRule<PoorHashObject>(new PoorHashObject())
+				.checkHashDistribution(1000);
+		try {
+			poorRule.apply(new Statement() {
+				@Override
+				public void evaluate() {
+				}
+			}, Description.EMPTY).evaluate();
+			Assert.fail("Poor hash codes were accepted");
+		} catch (AssertionFailedError e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("poorly distributed"));
+		}
+		Assert.assertTrue(poorRule.getLastHashDistribution().getCollisionRate() > 0.9);
+	}
 
+	
+	@Test
+	public void hashDistributionOfSingleInstanceIsSkipped() throws Throwable {
+		FulfillEqualsContractRule<StatelessObject> statelessRule = new FulfillEqualsContractRule<StatelessObject>(
+				new StatelessObject()).checkHashDistribution(1000);
+		statelessRule.apply(new Statement() {
+			@Override
+			public void evaluate() {
+			}
+		}, Description.EMPTY).evaluate();
+		Assert.assertNull(statelessRule.getLastHashDistribution());
+	}
+	
+	@Test
+	public void allocatingHashCodeFails() throws Throwable {
+		Assume.assumeTrue(ThreadAllocation.isSupported());
+		FulfillEqualsContractRule<AllocatingHashObject> costRule = new FulfillEqualsContractRule<AllocatingHashObject>(
+				new AllocatingHashObject()).hashCodeBudget(-1, 0).costMeasurement(1, 3, 10);
+		try {
+			costRule.apply(new Statement() {
+				@Override
+				public void evaluate() {
+				}
+			}, Description.EMPTY).evaluate();
+			Assert.fail("Allocation in hashCode was accepted");
+		} catch (AssertionFailedError e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("B/op"));
+		}
+		Assert.assertTrue(costRule.getLastHashCodeCost().getBytesPerOp() > 0);
+	}
+	
+	@Test
+	public void costIsMeasuredOnFilledInstances() throws Throwable {
+		Assume.assumeTrue(ThreadAllocation.isSupported());
+		FulfillEqualsContractRule<ValueAllocatingHashObject> costRule = new FulfillEqualsContractRule<ValueAllocatingHashObject>(
+				new ValueAllocatingHashObject()).hashCodeBudget(-1, 0).costMeasurement(1, 3, 10);
+		try {
+			costRule.apply(new Statement() {
+				@Override
+				public void evaluate() {
+				}
+			}, Description.EMPTY).evaluate();
+			Assert.fail("Allocation in hashCode of filled instance was accepted");
+		} catch (AssertionFailedError e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("B/op"));
+		}
+	}
+	
+	@Test
+	public void uncachedHashCodeOfImmutableFails() throws Throwable {
+		Statement nothing = new Statement() {
+			@Override
+			public void evaluate() {
+			}
+		};
+		new FulfillEqualsContractRule<CachedKey>(new CachedKey()).costMeasurement(1, 3, 10)
+				.apply(nothing, Description.EMPTY).evaluate();
+		try {
+			new FulfillEqualsContractRule<UncachedKey>(new UncachedKey()).costMeasurement(1, 3, 10)
+					.apply(nothing, Description.EMPTY).evaluate();
+			Assert.fail("Recomputed hashCode was accepted");
+		} catch (AssertionFailedError e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("recomputed"));
+		}
+	}
 }
@@ -0,0 +1,28 @@
+package org.wowbagger.rules;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+public class GetterSetterPackageTest {
+
+	@Test
+	public void testPackage() throws Throwable {
+		GetterSetterRule<Object> rule = GetterSetterRule.forPackage("org.wowbagger.rules.beans");
+		try {
+			rule.apply(new Statement() {
+				@Override
+				public void evaluate() throws Throwable {
+				}
+			}, Description.createSuiteDescription(GetterSetterPackageTest.class)).evaluate();
+			Assert.fail("broken bean should be reported");
+		} catch (AssertionError e) {
+			Assert.assertTrue(e.getMessage().startsWith("Getters and setters of 1 of 3 classes"));
+			Assert.assertTrue(e.getMessage().contains("\norg.wowbagger.rules.beans.BrokenBean\n"));
+			Assert.assertTrue(e.getMessage().contains("setCode: Getter getCode() not found"));
+			Assert.assertTrue(e.getMessage().contains("setName: Getter getName did not return value from setter"));
+			Assert.assertFalse(e.getMessage().contains("Person"));
+		}
+	}
+}
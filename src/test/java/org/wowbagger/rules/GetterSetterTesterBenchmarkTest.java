@@ -0,0 +1,61 @@
+package org.wowbagger.rules;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.wowbagger.rules.annotation.Benchmark;
+import org.wowbagger.rules.intern.GetterSetterTester;
+
+/**
+ * Compares reflective and method handle invocation of getters and setters.
+ */
+public class GetterSetterTesterBenchmarkTest {
+
+	public static class Bean {
+		private int number;
+		private long counter;
+		private String name;
+		private Integer value;
+		
+		public int getNumber() {
+			return number;
+		}
+		public void setNumber(int number) {
+			this.number = number;
+		}
+		public long getCounter() {
+			return counter;
+		}
+		public void setCounter(long counter) {
+			this.counter = counter;
+		}
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public Integer getValue() {
+			return value;
+		}
+		public void setValue(Integer value) {
+			this.value = value;
+		}
+	}
+	
+	private final Bean bean = new Bean();
+	
+	@Rule
+	public BenchmarkRule benchmark = new BenchmarkRule();
+	
+	@Benchmark(warmupIterations = 3, measurementIterations = 5, iterationMs = 20)
+	@Test
+	public void reflection() throws Exception {
+		new GetterSetterTester(bean).setMethodHandles(false).test();
+	}
+	
+	@Benchmark(warmupIterations = 3, measurementIterations = 5, iterationMs = 20)
+	@Test
+	public void methodHandles() throws Exception {
+		new GetterSetterTester(bean).setMethodHandles(true).test();
+	}
+}
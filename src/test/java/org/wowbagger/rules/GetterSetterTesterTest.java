@@ -0,0 +1,57 @@
+package org.wowbagger.rules;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wowbagger.rules.intern.GetterSetterTester;
+
+public class GetterSetterTesterTest {
+
+	public static class Part {
+	}
+	
+	/**
+	 * Getters return the other property of the same type.
+	 */
+	public static class SwappedBean {
+		private Runnable first;
+		private Runnable second;
+		private Part left;
+		private Part right;
+		
+		public Runnable getFirst() {
+			return second;
+		}
+		public void setFirst(Runnable first) {
+			this.first = first;
+		}
+		public Runnable getSecond() {
+			return first;
+		}
+		public void setSecond(Runnable second) {
+			this.second = second;
+		}
+		public Part getLeft() {
+			return right;
+		}
+		public void setLeft(Part left) {
+			this.left = left;
+		}
+		public Part getRight() {
+			return left;
+		}
+		public void setRight(Part right) {
+			this.right = right;
+		}
+	}
+	
+	@Test
+	public void swappedPropertiesOfSameTypeFail() {
+		List<String> failures = new GetterSetterTester(new SwappedBean()).verify();
+		Assert.assertEquals(failures.toString(), 4, failures.size());
+		for (String failure : failures) {
+			Assert.assertTrue(failure, failure.endsWith("did not return value from setter"));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package org.wowbagger.rules;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wowbagger.rules.intern.LatencyHistogram;
+
+public class LatencyHistogramTest {
+
+	/** Relative error of a percentile, half of the power of two range is split into 32 buckets. */
+	private static final double PRECISION = 1.0 / 32;
+	
+	@Test
+	public void smallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 64; i++) {
+			histogram.record(i);
+		}
+		Assert.assertEquals(64, histogram.getCount());
+		Assert.assertEquals(0, histogram.getMin());
+		Assert.assertEquals(63, histogram.getMax());
+		Assert.assertEquals(0, histogram.getPercentile(0));
+		Assert.assertEquals(31, histogram.getPercentile(50));
+		Assert.assertEquals(63, histogram.getPercentile(100));
+	}
+	
+	@Test
+	public void percentilesAreWithinPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100000; i++) {
+			histogram.record(i * 1000L);
+		}
+		Assert.assertEquals(100000, histogram.getCount());
+		Assert.assertEquals(1000, histogram.getMin());
+		Assert.assertEquals(100000000, histogram.getMax());
+		assertPercentile(50000000, histogram.getPercentile(50));
+		assertPercentile(90000000, histogram.getPercentile(90));
+		assertPercentile(99000000, histogram.getPercentile(99));
+		assertPercentile(99900000, histogram.getPercentile(99.9));
+		Assert.assertEquals(100000000, histogram.getPercentile(100));
+		assertPercentile(1000, histogram.getPercentile(0));
+	}
+	
+	@Test
+	public void mergedHistogramEqualsSingleOne() {
+		LatencyHistogram single = new LatencyHistogram();
+		LatencyHistogram even = new LatencyHistogram();
+		LatencyHistogram odd = new LatencyHistogram();
+		for (long value = 7; value < 50000000; value = value * 3 / 2 + 1) {
+			single.record(value);
+			(value % 2 == 0 ? even : odd).record(value);
+		}
+		LatencyHistogram merged = new LatencyHistogram();
+		merged.add(even);
+		merged.add(odd);
+		merged.add(new LatencyHistogram());
+		Assert.assertEquals(single.getCount(), merged.getCount());
+		Assert.assertEquals(even.getCount() + odd.getCount(), merged.getCount());
+		Assert.assertEquals(7, merged.getMin());
+		Assert.assertEquals(single.getMax(), merged.getMax());
+		for (double percentile = 0; percentile <= 100; percentile += 2.5) {
+			Assert.assertEquals(single.getPercentile(percentile), merged.getPercentile(percentile));
+		}
+	}
+	
+	@Test
+	public void valuesBeyondTrackedMaximum() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		long beyond = 1L << 50;
+		histogram.record(10);
+		histogram.record(beyond);
+		histogram.record(-5);
+		Assert.assertEquals(3, histogram.getCount());
+		Assert.assertEquals(0, histogram.getMin());
+		Assert.assertEquals(beyond, histogram.getMax());
+		Assert.assertEquals(10, histogram.getPercentile(50));
+		Assert.assertEquals(beyond, histogram.getPercentile(100));
+	}
+	
+	@Test
+	public void emptyHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getCount());
+		Assert.assertEquals(0, histogram.getMin());
+		Assert.assertEquals(0, histogram.getMax());
+		Assert.assertEquals(0, histogram.getPercentile(99));
+	}
+	
+	/**
+	 * Percentile is the upper bound of its bucket, so it is not below exact value.
+	 */
+	private static void assertPercentile(long expected, long actual) {
+		Assert.assertTrue(expected + " <= " + actual, actual >= expected);
+		Assert.assertTrue(actual + " within precision of " + expected, actual <= expected * (1 + PRECISION));
+	}
+}
@@ -0,0 +1,44 @@
+package org.wowbagger.rules;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+public class MockRuleTest {
+
+	private static List<String> firstMock;
+	
+	@Rule
+	public MockRule mocks = new MockRule(this, true);
+	
+	@Mock
+	private List<String> list;
+	
+	@Test
+	public void first() {
+		checkReusedMock();
+	}
+	
+	@Test
+	public void second() {
+		checkReusedMock();
+	}
+	
+	private void checkReusedMock() {
+		Assert.assertNotNull(list);
+		if (firstMock == null) {
+			firstMock = list;
+		}
+		Assert.assertSame(firstMock, list);
+		// stubbing and invocations of previous test were reset
+		Assert.assertNull(list.get(0));
+		Mockito.verify(list, Mockito.times(1)).get(0);
+		Mockito.when(list.get(0)).thenReturn("stubbed");
+		Assert.assertEquals("stubbed", list.get(0));
+		Assert.assertTrue(mocks.getLastSetupNanos() >= 0);
+	}
+}
@@ -0,0 +1,24 @@
+package org.wowbagger.rules;
+
+import org.wowbagger.rules.annotation.TestAccessors;
+
+/**
+ * Bean with overloaded setter, generates OverloadedBeanAccessorsTest with one test of value.
+ */
+@TestAccessors(OverloadedBean.class)
+public class OverloadedBean {
+	
+	private int value;
+
+	public int getValue() {
+		return value;
+	}
+
+	public void setValue(String value) {
+		this.value = Integer.parseInt(value);
+	}
+	
+	public void setValue(int value) {
+		this.value = value;
+	}
+}
@@ -0,0 +1,49 @@
+package org.wowbagger.rules;
+
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.wowbagger.rules.annotation.Invariant;
+import org.wowbagger.rules.beans.Account;
+import org.wowbagger.rules.beans.Money;
+
+public class PackageRulesTest {
+
+	@ClassRule
+	public static FulfillEqualsContractRule<Object> equalsRule = FulfillEqualsContractRule.forPackage("org.wowbagger.rules.beans");
+	
+	@ClassRule
+	public static InvariantRule invariantRule = InvariantRule.forPackage("org.wowbagger.rules.beans");
+	
+	@Invariant(name="balance")
+	@Test
+	public void testBalance() {
+		Assert.assertTrue(invariantRule.getTestedClasses().contains(Account.class));
+	}
+	
+	@Test
+	public void equalsClassesAreFound() {
+		Assert.assertTrue(equalsRule.getTestedClasses().contains(Money.class));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownPackageFails() {
+		InvariantRule.forPackage("org.wowbagger.rules.mistyped");
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void packageWithoutClassFilesFails() {
+		FulfillEqualsContractRule.forPackage("java.util");
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void packageWithoutBeansFails() throws Throwable {
+		GetterSetterRule.forPackage("org.wowbagger.rules.annotation").apply(new Statement() {
+			@Override
+			public void evaluate() {
+			}
+		}, Description.EMPTY).evaluate();
+	}
+}
@@ -0,0 +1,197 @@
+package org.wowbagger.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.StaticApplicationContext;
+import org.wowbagger.rules.beans.Person;
+
+public class SpringContextRuleTest {
+
+	private static final Statement NOTHING = new Statement() {
+		@Override
+		public void evaluate() {
+		}
+	};
+	
+	private static AtomicInteger firstCounter;
+	
+	@Rule
+	public SpringContextRule spring = new SpringContextRule(new String[] { "org/wowbagger/rules/spring-test-context.xml" }, 
+			this, true);
+	
+	@Autowired
+	public AtomicInteger counter;
+	
+	@Autowired
+	public Person person;
+	
+	@AfterClass
+	public static void contextWasShared() {
+		Assert.assertEquals(2, firstCounter.get());
+		Assert.assertTrue(SpringContextCache.shared().getHits() >= 1);
+	}
+	
+	@Test
+	public void first() {
+		checkSharedContext();
+	}
+	
+	@Test
+	public void second() {
+		checkSharedContext();
+	}
+	
+	@Test
+	public void startupIsProfiled() throws Throwable {
+		SpringContextRule profiled = new SpringContextRule(new String[] { "org/wowbagger/rules/spring-test-context.xml" }, 
+				new Object()).profileStartup(5).startupBudget(0);
+		try {
+			profiled.apply(NOTHING, Description.EMPTY).evaluate();
+			Assert.fail("Startup budget was not checked");
+		} catch (AssertionError e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("budget is 0 ms"));
+		}
+		List<String> beans = beanNames(profiled.getStartupProfiler());
+		Assert.assertTrue(beans.toString(), beans.containsAll(Arrays.asList("counter", "person")));
+		Assert.assertTrue(profiled.getStartupProfiler().getRefreshNanos() > 0);
+	}
+	
+	@Test
+	public void lazyInitCreatesInjectedBeans() throws Throwable {
+		PersonTarget target = new PersonTarget();
+		SpringContextRule lazy = new SpringContextRule(new String[] { "org/wowbagger/rules/spring-test-context.xml" }, 
+				target).lazyInit().profileStartup(5);
+		lazy.apply(NOTHING, Description.EMPTY).evaluate();
+		Assert.assertEquals("Arthur", target.somebody.getName());
+		Assert.assertEquals(Arrays.asList("person"), beanNames(lazy.getStartupProfiler()));
+	}
+	
+	@Test(timeout = 10000)
+	public void cacheCreatesContextsOutsideOfLock() throws Throwable {
+		final SpringContextCache cache = new SpringContextCache();
+		final CountDownLatch slowStarted = new CountDownLatch(1);
+		final CountDownLatch fastCreated = new CountDownLatch(1);
+		Thread slow = new Thread(new Runnable() {
+			public void run() {
+				cache.get(Arrays.asList("slow"), new SpringContextCache.ContextCreator() {
+					public ConfigurableApplicationContext create() {
+						slowStarted.countDown();
+						try {
+							fastCreated.await();
+						} catch (InterruptedException e) {
+							throw new IllegalStateException(e);
+						}
+						return refreshed(new StaticApplicationContext());
+					}
+				});
+			}
+		});
+		slow.start();
+		slowStarted.await();
+		cache.get(Arrays.asList("fast"), new SpringContextCache.ContextCreator() {
+			public ConfigurableApplicationContext create() {
+				return refreshed(new StaticApplicationContext());
+			}
+		});
+		fastCreated.countDown();
+		slow.join();
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(2, cache.getMisses());
+		cache.clear();
+	}
+	
+	@Test
+	public void markDirtyKeepsRecreatedContext() {
+		SpringContextCache cache = new SpringContextCache();
+		List<String> key = Arrays.asList("dirty");
+		ConfigurableApplicationContext first = cache.get(key, new StaticCreator());
+		cache.markDirty(key, first);
+		Assert.assertFalse(first.isActive());
+		ConfigurableApplicationContext second = cache.get(key, new StaticCreator());
+		Assert.assertNotSame(first, second);
+		// stale context of another test must not close the recreated one
+		cache.markDirty(key, first);
+		Assert.assertTrue(second.isActive());
+		Assert.assertSame(second, cache.get(key, new StaticCreator()));
+		cache.clear();
+	}
+	
+	@Test(timeout = 10000)
+	public void evictionSkipsNewestContext() throws Throwable {
+		final SpringContextCache cache = new SpringContextCache();
+		cache.setMaxSize(1);
+		ConfigurableApplicationContext old = cache.get(Arrays.asList("old"), new StaticCreator());
+		final CountDownLatch newStarted = new CountDownLatch(1);
+		final CountDownLatch oldUsed = new CountDownLatch(1);
+		Thread creator = new Thread(new Runnable() {
+			public void run() {
+				cache.get(Arrays.asList("new"), new SpringContextCache.ContextCreator() {
+					public ConfigurableApplicationContext create() {
+						newStarted.countDown();
+						try {
+							oldUsed.await();
+						} catch (InterruptedException e) {
+							throw new IllegalStateException(e);
+						}
+						return refreshed(new StaticApplicationContext());
+					}
+				});
+			}
+		});
+		creator.start();
+		newStarted.await();
+		// old context becomes more recently used than the one being created
+		cache.get(Arrays.asList("old"), new StaticCreator());
+		oldUsed.countDown();
+		creator.join();
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertFalse(old.isActive());
+		cache.clear();
+	}
+	
+	private static class StaticCreator implements SpringContextCache.ContextCreator {
+		public ConfigurableApplicationContext create() {
+			return refreshed(new StaticApplicationContext());
+		}
+	}
+	
+	private static ConfigurableApplicationContext refreshed(ConfigurableApplicationContext context) {
+		context.refresh();
+		return context;
+	}
+	
+	private static List<String> beanNames(BeanStartupProfiler profiler) {
+		List<String> beans = new ArrayList<String>();
+		for (BeanStartupProfiler.BeanTiming timing : profiler.getBeanTimings()) {
+			beans.add(timing.getBeanName());
+		}
+		return beans;
+	}
+	
+	public static class PersonTarget {
+		@Autowired
+		private Person somebody;
+	}
+	
+	private void checkSharedContext() {
+		Assert.assertEquals("Arthur", person.getName());
+		if (firstCounter == null) {
+			firstCounter = counter;
+		}
+		Assert.assertSame(firstCounter, counter);
+		counter.incrementAndGet();
+	}
+}
@@ -0,0 +1,27 @@
+package org.wowbagger.rules;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.wowbagger.rules.annotation.Warmup;
+
+public class WarmupRuleTest {
+
+	private static int invocations;
+	
+	@Rule
+	public WarmupRule rule = new WarmupRule();
+	
+	@Warmup(iterations = 10)
+	@Test
+	public void test() {
+		invocations++;
+	}
+	
+	@AfterClass
+	public static void verify() {
+		// warmup and measured run
+		Assert.assertEquals(11, invocations);
+	}
+}
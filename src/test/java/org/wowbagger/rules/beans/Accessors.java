@@ -0,0 +1,11 @@
+package org.wowbagger.rules.beans;
+
+import org.wowbagger.rules.annotation.TestAccessors;
+
+/**
+ * Generates PersonAccessorsTest and EmployeeAccessorsTest.
+ */
+@TestAccessors({Person.class, Employee.class})
+class Accessors {
+	
+}
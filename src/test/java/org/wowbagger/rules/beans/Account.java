@@ -0,0 +1,10 @@
+package org.wowbagger.rules.beans;
+
+import org.wowbagger.rules.annotation.Invariants;
+
+@Invariants(
+		names={"balance"}, 
+		descriptions={"balance is never negative"})
+public class Account {
+	
+}
@@ -0,0 +1,15 @@
+package org.wowbagger.rules.beans;
+
+public class BrokenBean {
+	private String name;
+	
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		// value is lost
+	}
+	public void setCode(String code) {
+		// no getter
+	}
+}
@@ -0,0 +1,8 @@
+package org.wowbagger.rules.beans;
+
+/**
+ * Bean with inherited setters only.
+ */
+public class Employee extends Person {
+	
+}
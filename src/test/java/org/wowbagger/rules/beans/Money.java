@@ -0,0 +1,21 @@
+package org.wowbagger.rules.beans;
+
+public class Money {
+	private long amount;
+	private String currency;
+	
+	@Override
+	public int hashCode() {
+		return (int) (amount ^ (amount >>> 32)) * 31 + (currency == null ? 0 : currency.hashCode());
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Money))
+			return false;
+		Money other = (Money) obj;
+		return amount == other.amount && (currency == null ? other.currency == null : currency.equals(other.currency));
+	}
+}